@@ -0,0 +1,81 @@
+package com.zoomalan.libraryapi.benchmark;
+
+import com.zoomalan.libraryapi.LibraryApiApplication;
+import com.zoomalan.libraryapi.api.dto.BulkReturnResultDTO;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A drop box burst of {@link #BURST} returns, one loan at a time as the PATCH endpoint does it, against
+ * the set-based bulk return. Every invocation first checks the same books out again, outside the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkReturnBenchmark {
+
+    private static final int BURST = 200;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private List<String> isbns;
+    private List<Long> loanIds;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:bulk-return;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.devtools.restart.enabled=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        loanService = context.getBean(LoanService.class);
+
+        isbns = context.getBean(BookRepository.class).saveAll(IntStream.range(0, BURST)
+                .mapToObj(i -> Book.builder().title("Title " + i).author("Author").isbn("isbn-" + i).build())
+                .collect(Collectors.toList()))
+                .stream().map(Book::getIsbn).collect(Collectors.toList());
+    }
+
+    @Setup(Level.Invocation)
+    public void checkout() {
+        loanIds = isbns.stream()
+                .map(isbn -> loanService.checkout(isbn, "Customer", "customer@email.com").get())
+                .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int returnOneByOne() {
+        for (Long id : loanIds) {
+            Loan loan = loanService.getById(id).get();
+            loan.setReturned(true);
+            loanService.update(loan);
+        }
+        return loanIds.size();
+    }
+
+    @Benchmark
+    public BulkReturnResultDTO returnBurst() {
+        return loanService.returnAll(loanIds, null);
+    }
+}
@@ -0,0 +1,80 @@
+package com.zoomalan.libraryapi.benchmark;
+
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.mapper.BookMapper;
+import com.zoomalan.libraryapi.api.mapper.BookMapperImpl;
+import com.zoomalan.libraryapi.api.mapper.LoanMapper;
+import com.zoomalan.libraryapi.api.mapper.LoanMapperImpl;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the reflective ModelMapper path the controllers used to take with the generated mappers.
+ * Run with the gc profiler (the benchmark profile does) to get bytes allocated per mapping
+ * from gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+    private Book book;
+    private BookDTO bookDTO;
+    private Loan loan;
+
+    @Setup
+    public void setup() {
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapperImpl();
+        loanMapper = new LoanMapperImpl(bookMapper);
+
+        book = Book.builder().id(1L).title("Spring Boot").author("Alan").isbn("123").build();
+        bookDTO = BookDTO.builder().id(1L).title("Spring Boot").author("Alan").isbn("123").build();
+        loan = Loan.builder().id(1L).customer("Alan").customerEmail("alan@email.com")
+                .book(book).loanDate(LocalDate.now()).build();
+    }
+
+    @Benchmark
+    public BookDTO bookToDTOModelMapper() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO bookToDTOMapStruct() {
+        return bookMapper.toDTO(book);
+    }
+
+    @Benchmark
+    public Book dtoToBookModelMapper() {
+        return modelMapper.map(bookDTO, Book.class);
+    }
+
+    @Benchmark
+    public Book dtoToBookMapStruct() {
+        return bookMapper.toEntity(bookDTO);
+    }
+
+    @Benchmark
+    public LoanDTO loanToDTOModelMapper() {
+        LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+        loanDTO.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+        return loanDTO;
+    }
+
+    @Benchmark
+    public LoanDTO loanToDTOMapStruct() {
+        return loanMapper.toDTO(loan);
+    }
+}
@@ -0,0 +1,90 @@
+package com.zoomalan.libraryapi.benchmark;
+
+import com.zoomalan.libraryapi.LibraryApiApplication;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * HTTP throughput of the book search with {@code CLIENTS} concurrent clients against a Tomcat capped
+ * at {@code MAX_THREADS} platform threads, compared with the same server on virtual threads.
+ * The {@code virtual} mode needs a JDK 21 or later runtime.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(value = 3, jvmArgsAppend = {
+        "-Djdk.tracePinnedThreads=short",
+        "-Djdk.virtualThreadScheduler.parallelism=16"})
+@Threads(RequestThroughputBenchmark.CLIENTS)
+@State(Scope.Benchmark)
+public class RequestThroughputBenchmark {
+
+    static final int CLIENTS = 400;
+    private static final int MAX_THREADS = 200;
+    private static final int BOOKS = 10_000;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    @Setup
+    public void setup() {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.max-threads=" + MAX_THREADS,
+                        "spring.datasource.url=jdbc:h2:mem:throughput;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.devtools.restart.enabled=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN");
+        if ("virtual".equals(mode)) {
+            builder.profiles("virtual-threads");
+        }
+        context = builder.run();
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        context.getBean(BookRepository.class).saveAll(IntStream.range(0, BOOKS)
+                .mapToObj(i -> Book.builder()
+                        .title("Java " + i)
+                        .author("Author " + i % 100)
+                        .isbn("isbn-" + i)
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int findBooks() throws IOException {
+        int author = ThreadLocalRandom.current().nextInt(100);
+        HttpURLConnection connection = (HttpURLConnection)
+                new URL(baseUrl + "/api/books?author=Author%20" + author + "&page=0&size=20").openConnection();
+        int status = connection.getResponseCode();
+        try (InputStream body = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            while (body.read(buffer) != -1) {
+                // drained so the connection goes back to the keep-alive cache
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,54 @@
+package com.zoomalan.libraryapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Serialization of a loans page as GET /api/loans writes it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"20", "500"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Page<LoanDTO> page;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<LoanDTO> loans = LongStream.range(0, pageSize)
+                .mapToObj(id -> LoanDTO.builder()
+                        .id(id)
+                        .isbn("isbn-" + id)
+                        .customer("Customer " + id)
+                        .email("customer" + id + "@email.com")
+                        .book(BookDTO.builder().id(id).title("Title " + id).author("Author").isbn("isbn-" + id).build())
+                        .build())
+                .collect(Collectors.toList());
+        page = new PageImpl<>(loans, PageRequest.of(0, pageSize), 10_000);
+    }
+
+    @Benchmark
+    public byte[] serializeLoanPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
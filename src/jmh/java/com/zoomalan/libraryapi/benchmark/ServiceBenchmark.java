@@ -0,0 +1,90 @@
+package com.zoomalan.libraryapi.benchmark;
+
+import com.zoomalan.libraryapi.LibraryApiApplication;
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.service.BookService;
+import com.zoomalan.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Service calls against an in-memory H2 seeded with {@link #BOOKS} books.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+    private static final int BOOKS = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private LoanService loanService;
+    private List<Book> books;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.devtools.restart.enabled=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        bookService = context.getBean(BookService.class);
+        loanService = context.getBean(LoanService.class);
+
+        books = context.getBean(BookRepository.class).saveAll(IntStream.range(0, BOOKS)
+                .mapToObj(i -> Book.builder()
+                        .title((i % 10 == 0 ? "Spring " : "Java ") + i)
+                        .author("Author " + i % 100)
+                        .isbn("isbn-" + i)
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<BookDTO> findBooks() {
+        BookDTO filter = BookDTO.builder().title("spring").author("author 1").build();
+        return bookService.findAsDTO(filter, PageRequest.of(0, 20));
+    }
+
+    /**
+     * Saves an already returned loan, so every call runs the open-loan check and the insert
+     * without the book ever becoming unavailable.
+     */
+    @Benchmark
+    public Loan saveLoan() {
+        Book book = books.get(ThreadLocalRandom.current().nextInt(BOOKS));
+        Loan loan = Loan.builder()
+                .book(book)
+                .customer("Customer")
+                .customerEmail("customer@email.com")
+                .loanDate(LocalDate.now())
+                .returned(true)
+                .build();
+        return loanService.save(loan);
+    }
+}
@@ -4,11 +4,13 @@ import com.zoomalan.libraryapi.api.exceptions.ApiErrors;
 import com.zoomalan.libraryapi.exceptions.BusinessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 import org.springframework.web.server.ResponseStatusException;
 
 @RestControllerAdvice
@@ -21,6 +23,12 @@ public class ApplicationControllerAdvice {
         return new ApiErrors(bindingResult);
     }
 
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiErrors handleValidationExceptions(WebExchangeBindException e) {
+        return new ApiErrors(e.getBindingResult());
+    }
+
     @ExceptionHandler(BusinessException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleBusinessException(BusinessException e) {
@@ -31,4 +39,10 @@ public class ApplicationControllerAdvice {
     public ResponseEntity handleResponseStatusException(ResponseStatusException e) {
         return new ResponseEntity(new ApiErrors(e), e.getStatus());
     }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException e) {
+        return handleResponseStatusException(
+                new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Resource was modified concurrently"));
+    }
 }
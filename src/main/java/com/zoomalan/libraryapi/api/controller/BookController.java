@@ -1,56 +1,140 @@
 package com.zoomalan.libraryapi.api.controller;
 
 import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.BookImportResultDTO;
+import com.zoomalan.libraryapi.api.dto.CursorPageDTO;
 import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.mapper.BookMapper;
+import com.zoomalan.libraryapi.api.pagination.KeysetCursor;
 import com.zoomalan.libraryapi.model.entity.Book;
-import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.service.BookImportService;
 import com.zoomalan.libraryapi.service.BookService;
+import com.zoomalan.libraryapi.service.DataFormat;
+import com.zoomalan.libraryapi.service.ExportService;
 import com.zoomalan.libraryapi.service.LoanService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
 @Api("Book API")
 @Slf4j
 public class BookController {
 
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    static final String CSV_VALUE = "text/csv";
+
     private final BookService service;
-    private final ModelMapper modelMapper;
+    private final BookMapper bookMapper;
     private final LoanService loanService;
+    private final BookImportService importService;
+    private final ExportService exportService;
+
+    @Value("${application.export.timeout-millis:3600000}")
+    private long exportTimeoutMillis;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @ApiOperation("Create a book")
     public BookDTO create(@RequestBody @Valid BookDTO dto) {
         log.info("Creating a book for isbn: {}", dto.getIsbn());
-        Book book = modelMapper.map(dto, Book.class);
+        Book book = bookMapper.toEntity(dto);
         book = service.save(book);
-        return modelMapper.map(book, BookDTO.class);
+        return bookMapper.toDTO(book);
+    }
+
+    @PostMapping(value = "/import", consumes = {BookController.NDJSON_VALUE, BookController.CSV_VALUE})
+    @ApiOperation("Import books in bulk from a NDJSON or CSV body")
+    public BookImportResultDTO importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                           InputStream body) throws IOException {
+        DataFormat format = contentType.isCompatibleWith(MediaType.valueOf(CSV_VALUE))
+                ? DataFormat.CSV
+                : DataFormat.NDJSON;
+        log.info("Importing books from {}", format);
+        return importService.importBooks(new InputStreamReader(body, StandardCharsets.UTF_8), format);
+    }
+
+    @GetMapping("/export")
+    @ApiOperation("Export every book as NDJSON or CSV")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "NDJSON") DataFormat format,
+                                                        HttpServletRequest request, HttpServletResponse response) {
+        log.info("Exporting books as {}", format);
+        exportTimeout(request, response, exportTimeoutMillis);
+        return ResponseEntity.ok()
+                .contentType(mediaType(format))
+                .body(out -> exportService.exportBooks(out, format));
+    }
+
+    static MediaType mediaType(DataFormat format) {
+        return MediaType.valueOf(format == DataFormat.CSV ? CSV_VALUE : NDJSON_VALUE);
+    }
+
+    /**
+     * Gives a full export, which can stream far longer than any other request, its own timeout in place of
+     * {@code spring.mvc.async.request-timeout}. Must run in the handler, before the response body goes async.
+     */
+    static void exportTimeout(HttpServletRequest request, HttpServletResponse response, long timeoutMillis) {
+        AsyncWebRequest asyncRequest = WebAsyncUtils.createAsyncWebRequest(request, response);
+        asyncRequest.setTimeout(timeoutMillis);
+        WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncRequest);
     }
 
     @GetMapping("/{id}")
     @ApiOperation("Get a book by id")
-    public BookDTO get(@PathVariable Long id) {
+    public ResponseEntity<BookDTO> get(@PathVariable Long id, WebRequest request) {
         log.info("Getting a book by id: {}", id);
-        return service
-                .getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        String eTag = eTag(book);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(bookMapper.toDTO(book));
+    }
+
+    /**
+     * Strong validator for a book representation, taken from its version column.
+     */
+    static String eTag(Book book) {
+        return "\"" + book.getVersion() + "\"";
+    }
+
+    /**
+     * Strong comparison of an If-Match header value, which may list several tags or be {@code *}.
+     */
+    static boolean matches(String ifMatch, String eTag) {
+        return Arrays.stream(ifMatch.split(","))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(eTag));
     }
 
     @DeleteMapping("/{id}")
@@ -65,40 +149,51 @@ public class BookController {
 
     @PutMapping("/{id}")
     @ApiOperation("Update a book by id")
-    public BookDTO update(@PathVariable Long id, @RequestBody @Valid BookDTO dto) {
+    public ResponseEntity<BookDTO> update(@PathVariable Long id,
+                                          @RequestBody @Valid BookDTO dto,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("Updating a book by id: {}", id);
-        return service.getById(id).map(book -> {
-            book.setAuthor(dto.getAuthor());
-            book.setTitle(dto.getTitle());
-            book = service.update(book);
-            return modelMapper.map(book, BookDTO.class);
-        }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (ifMatch != null && !matches(ifMatch, eTag(book))) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Book was modified by another request");
+        }
+        // getById may answer with the instance held in the booksById cache, which every request shares, so the
+        // edit goes on a copy; the second-level cache behind it keeps only disassembled state
+        Book changed = Book.builder()
+                .id(book.getId())
+                .isbn(book.getIsbn())
+                .version(book.getVersion())
+                .title(dto.getTitle())
+                .author(dto.getAuthor())
+                .build();
+        Book updated = service.update(changed);
+        return ResponseEntity.ok().eTag(eTag(updated)).body(bookMapper.toDTO(updated));
     }
 
     @GetMapping
     @ApiOperation("Find books by params")
     public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
-        Book filter = modelMapper.map(dto, Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
-        List<BookDTO> list = result.getContent().stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class)).collect(Collectors.toList());
-        return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+        return service.findAsDTO(dto, pageRequest);
+    }
+
+    @GetMapping(params = "after")
+    @ApiOperation("Find books by params using a cursor instead of page numbers")
+    public CursorPageDTO<BookDTO> findByCursor(BookDTO dto,
+                                               @RequestParam String after,
+                                               @RequestParam(defaultValue = "20") int size) {
+        Book filter = bookMapper.toEntity(dto);
+        Slice<Book> result = service.findAfter(filter, KeysetCursor.decode(after), KeysetCursor.checkSize(size));
+        List<Book> books = result.getContent();
+        List<BookDTO> list = books.stream()
+                .map(bookMapper::toDTO).collect(Collectors.toList());
+        String next = result.hasNext() ? KeysetCursor.encode(books.get(books.size() - 1).getId()) : null;
+        return new CursorPageDTO<>(list, list.size(), next);
     }
 
     @GetMapping("/{id}/loans")
     @ApiOperation("Find book loans by params")
     public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable) {
         Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        Page<Loan> result = loanService.getLoansByBook(book, pageable);
-        List<LoanDTO> list = result.getContent()
-                .stream()
-                .map(loan -> {
-                    Book loanBook = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
-        return new PageImpl<>(list, pageable, result.getTotalElements());
+        return loanService.getLoansByBookAsDTO(book.getId(), pageable);
     }
 }
@@ -1,49 +1,66 @@
 package com.zoomalan.libraryapi.api.controller;
 
-import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.BatchCheckoutDTO;
+import com.zoomalan.libraryapi.api.dto.BatchCheckoutResultDTO;
+import com.zoomalan.libraryapi.api.dto.BulkReturnDTO;
+import com.zoomalan.libraryapi.api.dto.BulkReturnResultDTO;
+import com.zoomalan.libraryapi.api.dto.CursorPageDTO;
 import com.zoomalan.libraryapi.api.dto.LoanDTO;
 import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
 import com.zoomalan.libraryapi.api.dto.ReturnedLoanDTO;
-import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.api.mapper.LoanMapper;
+import com.zoomalan.libraryapi.api.pagination.KeysetCursor;
 import com.zoomalan.libraryapi.model.entity.Loan;
-import com.zoomalan.libraryapi.service.BookService;
+import com.zoomalan.libraryapi.service.CheckoutMode;
+import com.zoomalan.libraryapi.service.DataFormat;
+import com.zoomalan.libraryapi.service.ExportService;
 import com.zoomalan.libraryapi.service.LoanService;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDate;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/loans")
 @RequiredArgsConstructor
 public class LoanController {
 
     private final LoanService service;
-    private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
+    private final ExportService exportService;
+
+    @Value("${application.export.timeout-millis:3600000}")
+    private long exportTimeoutMillis;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Long create(@RequestBody LoanDTO dto) {
-        Book book = bookService.getBookByIsbn(dto.getIsbn())
+        return service.checkout(dto.getIsbn(), dto.getCustomer(), dto.getEmail())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
+    }
 
-        Loan entity = Loan.builder()
-                .book(book)
-                .customer(dto.getCustomer())
-                .loanDate(LocalDate.now())
-                .build();
-
-        entity = service.save(entity);
-        return entity.getId();
+    /**
+     * Lends a stack of books from a kiosk. Responds 409 with the isbns that could not be lent when no loan was made.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchCheckoutResultDTO> createAll(@RequestBody BatchCheckoutDTO dto,
+                                                            @RequestParam(defaultValue = "ALL_OR_NOTHING") CheckoutMode mode) {
+        BatchCheckoutResultDTO result = service.checkoutAll(dto.getIsbns(), dto.getCustomer(), dto.getEmail(), mode);
+        return ResponseEntity.status(result.getLoanIds().isEmpty() ? HttpStatus.CONFLICT : HttpStatus.CREATED)
+                .body(result);
     }
 
     @PatchMapping("/{id}")
@@ -54,20 +71,36 @@ public class LoanController {
         service.update(loan);
     }
 
+    /**
+     * Returns a burst of loans at once, e.g. from the drop box scanner, instead of one PATCH per loan.
+     */
+    @PostMapping("/returns")
+    public BulkReturnResultDTO returnBooks(@RequestBody BulkReturnDTO dto) {
+        return service.returnAll(dto.getIds(), dto.getIsbns());
+    }
+
     @GetMapping
     public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest) {
-        Page<Loan> result = service.find(dto, pageRequest);
-        List<LoanDTO> loans = result
-                .getContent()
-                .stream().map(entity -> {
+        return service.findAsDTO(dto, pageRequest);
+    }
 
-                    Book book = entity.getBook();
-                    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
+    @GetMapping(params = "after")
+    public CursorPageDTO<LoanDTO> findByCursor(LoanFilterDTO dto,
+                                               @RequestParam String after,
+                                               @RequestParam(defaultValue = "20") int size) {
+        Slice<Loan> result = service.findAfter(dto, KeysetCursor.decode(after), KeysetCursor.checkSize(size));
+        List<Loan> content = result.getContent();
+        List<LoanDTO> loans = content.stream().map(loanMapper::toDTO).collect(Collectors.toList());
+        String next = result.hasNext() ? KeysetCursor.encode(content.get(content.size() - 1).getId()) : null;
+        return new CursorPageDTO<>(loans, loans.size(), next);
+    }
 
-                    return loanDTO;
-                }).collect(Collectors.toList());
-        return new PageImpl<LoanDTO>(loans, pageRequest, result.getTotalElements());
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "NDJSON") DataFormat format,
+                                                        HttpServletRequest request, HttpServletResponse response) {
+        BookController.exportTimeout(request, response, exportTimeoutMillis);
+        return ResponseEntity.ok()
+                .contentType(BookController.mediaType(format))
+                .body(out -> exportService.exportLoans(out, format));
     }
 }
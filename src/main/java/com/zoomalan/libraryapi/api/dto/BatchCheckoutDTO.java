@@ -0,0 +1,21 @@
+package com.zoomalan.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCheckoutDTO {
+
+    private String customer;
+
+    private String email;
+
+    private List<String> isbns;
+}
@@ -0,0 +1,30 @@
+package com.zoomalan.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCheckoutResultDTO {
+
+    /**
+     * The new loan ids by isbn, in request order; empty when an all-or-nothing checkout was refused.
+     */
+    @Builder.Default
+    private Map<String, Long> loanIds = new LinkedHashMap<>();
+
+    @Builder.Default
+    private List<String> unknownIsbns = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> loanedIsbns = new ArrayList<>();
+}
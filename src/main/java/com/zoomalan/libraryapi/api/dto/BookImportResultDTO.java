@@ -0,0 +1,28 @@
+package com.zoomalan.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookImportResultDTO {
+
+    private long total;
+
+    private long imported;
+
+    private long rejected;
+
+    private long elapsedMillis;
+
+    private double rowsPerSecond;
+
+    // the first application.books.import.max-rejected-rows of the rejected rows
+    private List<BookImportRowDTO> rejectedRows;
+}
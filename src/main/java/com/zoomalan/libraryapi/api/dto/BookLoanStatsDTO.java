@@ -0,0 +1,19 @@
+package com.zoomalan.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookLoanStatsDTO {
+
+    private Long bookId;
+
+    private long totalLoans;
+
+    private long openLoans;
+}
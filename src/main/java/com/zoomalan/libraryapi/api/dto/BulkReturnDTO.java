@@ -0,0 +1,22 @@
+package com.zoomalan.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Loans to mark returned, by loan id or by the isbn of a book with an open loan; either list may be absent.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReturnDTO {
+
+    private List<Long> ids;
+
+    private List<String> isbns;
+}
@@ -0,0 +1,46 @@
+package com.zoomalan.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReturnResultDTO {
+
+    @Builder.Default
+    private List<Long> returnedIds = new ArrayList<>();
+
+    @Builder.Default
+    private List<Long> unknownIds = new ArrayList<>();
+
+    @Builder.Default
+    private List<Long> alreadyReturnedIds = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> unknownIsbns = new ArrayList<>();
+
+    /**
+     * Isbns of registered books with no open loan.
+     */
+    @Builder.Default
+    private List<String> notLoanedIsbns = new ArrayList<>();
+
+    /**
+     * Ids in a chunk whose transaction failed and was rolled back; none of them were returned.
+     */
+    @Builder.Default
+    private List<Long> failedIds = new ArrayList<>();
+
+    /**
+     * Isbns whose open loans could not be looked up; none of their loans were returned.
+     */
+    @Builder.Default
+    private List<String> failedIsbns = new ArrayList<>();
+}
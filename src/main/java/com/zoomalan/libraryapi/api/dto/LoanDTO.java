@@ -25,4 +25,15 @@ public class LoanDTO {
     private String email;
 
     private BookDTO book;
+
+    /**
+     * Used by the repository projections, which select the loan and its book columns in one flat row.
+     */
+    public LoanDTO(Long id, String customer, String email, Long bookId, String title, String author, String isbn) {
+        this.id = id;
+        this.isbn = isbn;
+        this.customer = customer;
+        this.email = email;
+        this.book = new BookDTO(bookId, title, author, isbn);
+    }
 }
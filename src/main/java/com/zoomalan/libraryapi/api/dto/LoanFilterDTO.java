@@ -4,7 +4,14 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 
+import java.time.LocalDate;
+
+/**
+ * A loan matches when it has any of the given isbn, customer or email, and also falls in the
+ * loan date range and has the returned status, when those are given. Blank fields are ignored.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -13,4 +20,13 @@ public class LoanFilterDTO {
 
     private String isbn;
     private String customer;
+    private String email;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate loanDateFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate loanDateTo;
+
+    private Boolean returned;
 }
@@ -0,0 +1,31 @@
+package com.zoomalan.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SortedMap;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanStatsDTO {
+
+    private long totalLoans;
+
+    private long openLoans;
+
+    private List<BookLoanStatsDTO> mostBorrowed;
+
+    private SortedMap<LocalDate, Long> checkoutsPerDay;
+
+    /**
+     * When {@link #mostBorrowed} and {@link #checkoutsPerDay} were last ranked; the totals are live.
+     */
+    private LocalDateTime rankedAt;
+}
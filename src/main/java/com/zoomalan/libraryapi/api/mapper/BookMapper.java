@@ -0,0 +1,16 @@
+package com.zoomalan.libraryapi.api.mapper;
+
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.model.entity.Book;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface BookMapper {
+
+    BookDTO toDTO(Book book);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Book toEntity(BookDTO dto);
+}
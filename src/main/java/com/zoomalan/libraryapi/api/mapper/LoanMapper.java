@@ -0,0 +1,15 @@
+package com.zoomalan.libraryapi.api.mapper;
+
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring", uses = BookMapper.class, injectionStrategy = InjectionStrategy.CONSTRUCTOR)
+public interface LoanMapper {
+
+    @Mapping(target = "isbn", source = "book.isbn")
+    @Mapping(target = "email", source = "customerEmail")
+    LoanDTO toDTO(Loan loan);
+}
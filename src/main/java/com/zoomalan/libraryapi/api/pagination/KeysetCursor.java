@@ -0,0 +1,55 @@
+package com.zoomalan.libraryapi.api.pagination;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque token for keyset pagination. It carries the sort key of the last row
+ * returned, which is the row id, so the next page can seek past it.
+ */
+public final class KeysetCursor {
+
+    public static final int MAX_SIZE = 1000;
+
+    private static final String PREFIX = "id:";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Long lastId) {
+        String raw = PREFIX + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the id encoded in the token, or {@code null} for an empty token, meaning the first page.
+     */
+    public static Long decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw invalid();
+            }
+            return Long.valueOf(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+    }
+
+    public static int checkSize(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + MAX_SIZE);
+        }
+        return size;
+    }
+
+    private static ResponseStatusException invalid() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
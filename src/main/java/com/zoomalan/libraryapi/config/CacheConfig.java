@@ -0,0 +1,17 @@
+package com.zoomalan.libraryapi.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches the books {@code BookService} looks up by id and by isbn, the checkout's hot path, with the hit, miss and
+ * eviction counts under {@code cache.*} in the actuator. Behind them Hibernate's second-level cache serves the
+ * books loans join to and the lookups these miss; the {@code reactive} profile has only these.
+ */
+@EnableCaching
+@Configuration
+public class CacheConfig {
+
+    public static final String BOOKS_BY_ID = "booksById";
+    public static final String BOOKS_BY_ISBN = "booksByIsbn";
+}
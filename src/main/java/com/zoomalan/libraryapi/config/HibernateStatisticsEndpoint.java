@@ -0,0 +1,151 @@
+package com.zoomalan.libraryapi.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@code /actuator/hibernate}: per-query, per-entity and per-cache-region Hibernate statistics since the last
+ * reset, plus the statements recorded by the {@link SlowStatementLog}. A DELETE resets both.
+ */
+@Component
+@Endpoint(id = "hibernate")
+public class HibernateStatisticsEndpoint {
+
+    private final Statistics statistics;
+    private final SlowStatementLog slowStatements;
+
+    public HibernateStatisticsEndpoint(EntityManagerFactory entityManagerFactory, SlowStatementLog slowStatements) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.slowStatements = slowStatements;
+    }
+
+    @ReadOperation
+    public HibernateStatistics statistics() {
+        List<QueryStats> queries = Arrays.stream(statistics.getQueries())
+                .map(query -> new QueryStats(query, statistics.getQueryStatistics(query)))
+                .sorted(Comparator.comparingLong(QueryStats::getTotalMillis).reversed())
+                .collect(Collectors.toList());
+        Map<String, EntityStats> entities = new TreeMap<>();
+        for (String entity : statistics.getEntityNames()) {
+            entities.put(entity, new EntityStats(statistics.getEntityStatistics(entity)));
+        }
+        Map<String, CacheRegionStats> cacheRegions = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics != null) {
+                cacheRegions.put(region, new CacheRegionStats(regionStatistics));
+            }
+        }
+        return new HibernateStatistics(
+                statistics.isStatisticsEnabled(),
+                statistics.getPrepareStatementCount(),
+                statistics.getEntityLoadCount(),
+                statistics.getEntityFetchCount(),
+                statistics.getCollectionLoadCount(),
+                statistics.getCollectionFetchCount(),
+                queries,
+                entities,
+                cacheRegions,
+                new SlowStatements(slowStatements.getThresholdMillis(), slowStatements.slowest()));
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics.clear();
+        slowStatements.clear();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class HibernateStatistics {
+
+        private final boolean enabled;
+        private final long preparedStatements;
+        private final long entityLoads;
+        private final long entityFetches;
+        private final long collectionLoads;
+        private final long collectionFetches;
+        /**
+         * Slowest total time first.
+         */
+        private final List<QueryStats> queries;
+        private final Map<String, EntityStats> entities;
+        private final Map<String, CacheRegionStats> cacheRegions;
+        private final SlowStatements slowStatements;
+    }
+
+    @Getter
+    public static class QueryStats {
+
+        private final String query;
+        private final long executions;
+        private final long totalMillis;
+        private final long maxMillis;
+        private final long rows;
+
+        QueryStats(String query, QueryStatistics statistics) {
+            this.query = query;
+            this.executions = statistics.getExecutionCount();
+            this.totalMillis = statistics.getExecutionTotalTime();
+            this.maxMillis = statistics.getExecutionMaxTime();
+            this.rows = statistics.getExecutionRowCount();
+        }
+    }
+
+    @Getter
+    public static class EntityStats {
+
+        private final long loads;
+        private final long fetches;
+        private final long inserts;
+        private final long updates;
+        private final long deletes;
+
+        EntityStats(EntityStatistics statistics) {
+            this.loads = statistics.getLoadCount();
+            this.fetches = statistics.getFetchCount();
+            this.inserts = statistics.getInsertCount();
+            this.updates = statistics.getUpdateCount();
+            this.deletes = statistics.getDeleteCount();
+        }
+    }
+
+    @Getter
+    public static class CacheRegionStats {
+
+        private final long hits;
+        private final long misses;
+        private final long puts;
+
+        CacheRegionStats(CacheRegionStatistics statistics) {
+            this.hits = statistics.getHitCount();
+            this.misses = statistics.getMissCount();
+            this.puts = statistics.getPutCount();
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SlowStatements {
+
+        private final long thresholdMillis;
+        private final List<SlowStatementLog.SlowStatement> statements;
+    }
+}
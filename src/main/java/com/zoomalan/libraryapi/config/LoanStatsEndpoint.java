@@ -0,0 +1,41 @@
+package com.zoomalan.libraryapi.config;
+
+import com.zoomalan.libraryapi.api.dto.BookLoanStatsDTO;
+import com.zoomalan.libraryapi.api.dto.LoanStatsDTO;
+import com.zoomalan.libraryapi.service.LoanStatsService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/loanstats}: loan counters served from memory. Totals are live, the most borrowed
+ * books and the per-day counts are ranked again on every flush. A POST rebuilds them from the loan table.
+ */
+@Component
+@Endpoint(id = "loanstats")
+public class LoanStatsEndpoint {
+
+    private final LoanStatsService statsService;
+
+    public LoanStatsEndpoint(LoanStatsService statsService) {
+        this.statsService = statsService;
+    }
+
+    @ReadOperation
+    public LoanStatsDTO stats() {
+        return statsService.getStats();
+    }
+
+    @ReadOperation
+    public BookLoanStatsDTO book(@Selector Long bookId) {
+        return statsService.getBookStats(bookId);
+    }
+
+    @WriteOperation
+    public LoanStatsDTO rebuild() {
+        statsService.rebuild();
+        return statsService.getStats();
+    }
+}
@@ -0,0 +1,70 @@
+package com.zoomalan.libraryapi.config;
+
+import com.zoomalan.libraryapi.exceptions.BusinessException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call on the book and loan services and repositories, tagged by operation and outcome.
+ * Percentiles and histograms for the {@code library.*} timers are set in application.properties.
+ */
+@Aspect
+@Component
+public class OperationMetricsAspect {
+
+    static final String SERVICE_TIMER = "library.service";
+    static final String REPOSITORY_TIMER = "library.repository";
+
+    private final MeterRegistry registry;
+
+    public OperationMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Pointcut("execution(public * *(..)) && !execution(* java.lang.Object.*(..))")
+    void publicMethod() {
+    }
+
+    @Around("publicMethod() && this(com.zoomalan.libraryapi.service.BookService)")
+    public Object timeBookService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, SERVICE_TIMER, "BookService");
+    }
+
+    @Around("publicMethod() && this(com.zoomalan.libraryapi.service.LoanService)")
+    public Object timeLoanService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, SERVICE_TIMER, "LoanService");
+    }
+
+    @Around("publicMethod() && this(com.zoomalan.libraryapi.model.repository.BookRepository)")
+    public Object timeBookRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, REPOSITORY_TIMER, "BookRepository");
+    }
+
+    @Around("publicMethod() && this(com.zoomalan.libraryapi.model.repository.LoanRepository)")
+    public Object timeLoanRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, REPOSITORY_TIMER, "LoanRepository");
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String timer, String type) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "SUCCESS";
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e instanceof BusinessException ? "BUSINESS_ERROR" : "ERROR";
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(registry.timer(timer,
+                    "operation", type + "." + joinPoint.getSignature().getName(),
+                    "outcome", outcome,
+                    "exception", exception));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.zoomalan.libraryapi.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read that tolerates replica lag, such as a search, so that with replicas configured it runs in a
+ * read-only transaction on a replica. Any other read, even a read-only one, stays on the primary.
+ *
+ * @see ReadReplicaAspect
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadReplica {
+}
@@ -0,0 +1,71 @@
+package com.zoomalan.libraryapi.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Runs the methods marked {@link ReadReplica} in a read-only transaction that {@link ReplicaRoutingDataSource}
+ * sends to a replica in sync. Their session only reads the second-level and query caches: a replica may lag
+ * behind the primary, and what it returns must not be cached for the reads that go to the primary.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "application.datasource.replica", name = "urls")
+public class ReadReplicaAspect {
+
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private final TransactionTemplate readOnly;
+    private final EntityManager entityManager;
+
+    public ReadReplicaAspect(PlatformTransactionManager transactionManager, EntityManager entityManager) {
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Whether the current thread runs a method marked {@link ReadReplica}.
+     */
+    static boolean isReplicaRead() {
+        return REPLICA_READ.get() != null;
+    }
+
+    @Around("@annotation(com.zoomalan.libraryapi.config.ReadReplica)")
+    public Object readFromReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        Boolean outer = REPLICA_READ.get();
+        REPLICA_READ.set(Boolean.TRUE);
+        try {
+            return readOnly.execute(status -> {
+                Session session = entityManager.unwrap(Session.class);
+                CacheMode cacheMode = session.getCacheMode();
+                session.setCacheMode(CacheMode.GET);
+                try {
+                    return joinPoint.proceed();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new UndeclaredThrowableException(e);
+                } finally {
+                    session.setCacheMode(cacheMode);
+                }
+            });
+        } catch (UndeclaredThrowableException e) {
+            throw e.getUndeclaredThrowable();
+        } finally {
+            if (outer == null) {
+                REPLICA_READ.remove();
+            }
+        }
+    }
+}
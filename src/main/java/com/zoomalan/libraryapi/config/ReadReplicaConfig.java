@@ -0,0 +1,76 @@
+package com.zoomalan.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the single pool with a primary and one read-only pool per url in
+ * {@code application.datasource.replica.urls}, routed by {@link ReplicaRoutingDataSource}. Every pool takes the
+ * {@code spring.datasource} credentials and {@code spring.datasource.hikari} settings, and reports its
+ * {@code hikaricp.*} metrics under its own pool name: {@code primary}, {@code replica-1}, ...
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.datasource.replica", name = "urls")
+public class ReadReplicaConfig implements DisposableBean {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final HikariDataSource primary;
+    private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+
+    public ReadReplicaConfig(DataSourceProperties properties,
+                             Environment environment,
+                             MeterRegistry registry,
+                             @Value("${application.datasource.replica.urls}") String[] urls) {
+        Binder binder = Binder.get(environment);
+        this.primary = pool(properties, properties.determineUrl(), ReplicaRoutingDataSource.PRIMARY, binder, registry);
+        for (int i = 0; i < urls.length; i++) {
+            String name = "replica-" + (i + 1);
+            HikariDataSource replica = pool(properties, urls[i].trim(), name, binder, registry);
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        }
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String url, String name, Binder binder,
+                                  MeterRegistry registry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        pools.add(pool);
+        return pool;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Value("${application.datasource.replica.max-lag-millis:5000}") long maxLagMillis,
+                                               MeterRegistry registry) {
+        return new ReplicaLagMonitor(primary, replicas, maxLagMillis, registry);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaLagMonitor monitor, MeterRegistry registry) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas, monitor, registry));
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
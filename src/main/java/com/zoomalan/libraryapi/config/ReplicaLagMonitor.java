@@ -0,0 +1,106 @@
+package com.zoomalan.libraryapi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes a heartbeat on the primary and reads it back from every replica. A replica holding the latest beat is
+ * in sync; one that misses it lags by at least the age of the beat it has. Replicas lagging more than the
+ * allowed maximum, or not answering, stop receiving reads until they catch up. Until the first check none is
+ * in sync, so reads start on the primary.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    static final String LAG_GAUGE = "library.datasource.replica.lag";
+
+    private static final String WRITE_BEAT = " update replica_heartbeat set beat_at = ? where id = 1 ";
+    private static final String READ_BEAT = " select beat_at from replica_heartbeat where id = 1 ";
+
+    private final JdbcTemplate primary;
+    private final Map<String, JdbcTemplate> replicas = new LinkedHashMap<>();
+    private final long maxLagMillis;
+    /**
+     * Negative while unknown.
+     */
+    private final Map<String, Long> lagMillis = new ConcurrentHashMap<>();
+    private volatile List<String> inSync = Collections.emptyList();
+    private Timestamp lastBeat;
+
+    public ReplicaLagMonitor(DataSource primary, Map<String, DataSource> replicas, long maxLagMillis,
+                             MeterRegistry registry) {
+        this.primary = new JdbcTemplate(primary);
+        this.maxLagMillis = maxLagMillis;
+        replicas.forEach((name, replica) -> {
+            this.replicas.put(name, new JdbcTemplate(replica));
+            lagMillis.put(name, -1L);
+            Gauge.builder(LAG_GAUGE, lagMillis, lags -> lags.get(name) < 0 ? Double.NaN : lags.get(name))
+                    .description("Replication lag seen by the last heartbeat, NaN when the replica did not answer")
+                    .baseUnit("milliseconds")
+                    .tag("datasource", name)
+                    .register(registry);
+        });
+    }
+
+    /**
+     * The replicas reads may go to, in configuration order.
+     */
+    public List<String> inSync() {
+        return inSync;
+    }
+
+    public long maxLagMillis() {
+        return maxLagMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${application.datasource.replica.heartbeat-millis:1000}")
+    public synchronized void check() {
+        long now = System.currentTimeMillis();
+        List<String> healthy = new ArrayList<>();
+        replicas.forEach((name, replica) -> {
+            long lag = lag(name, replica, now);
+            lagMillis.put(name, lag);
+            if (lag >= 0 && lag <= maxLagMillis) {
+                healthy.add(name);
+            }
+        });
+        if (!healthy.equals(inSync)) {
+            log.info("Replicas in sync: {}", healthy);
+        }
+        inSync = Collections.unmodifiableList(healthy);
+
+        Timestamp beat = new Timestamp(now);
+        try {
+            primary.update(WRITE_BEAT, beat);
+            lastBeat = beat;
+        } catch (DataAccessException e) {
+            log.warn("Could not write the replica heartbeat on the primary", e);
+        }
+    }
+
+    private long lag(String name, JdbcTemplate replica, long now) {
+        if (lastBeat == null) {
+            return -1;
+        }
+        try {
+            Timestamp beat = replica.queryForObject(READ_BEAT, Timestamp.class);
+            return beat.before(lastBeat) ? now - beat.getTime() : 0;
+        } catch (DataAccessException e) {
+            log.warn("Could not read the heartbeat from replica {}: {}", name, e.getMessage());
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.zoomalan.libraryapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out replica connections, round robin over the replicas the {@link ReplicaLagMonitor} finds in sync, to
+ * the read-only transactions of methods marked {@link ReadReplica}, and primary connections to everything else,
+ * plain read-only repository calls included. The transaction is only known to be read-only once it has begun, so
+ * this sits behind a lazy connection proxy. Every connection is counted in {@code library.datasource.routing} by
+ * data source and reason: read from a replica, fallback when no replica is in sync, or write for any other
+ * connection. {@code unwrap} reaches the primary pool, as the Hikari metrics binding expects.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String ROUTING_COUNTER = "library.datasource.routing";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final ReplicaLagMonitor monitor;
+    private final MeterRegistry registry;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, ReplicaLagMonitor monitor,
+                                    MeterRegistry registry) {
+        this.primary = primary;
+        this.replicas = new HashMap<>(replicas);
+        this.monitor = monitor;
+        this.registry = registry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target().getConnection(username, password);
+    }
+
+    private DataSource target() {
+        if (!ReadReplicaAspect.isReplicaRead() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return routed(PRIMARY, primary, "write");
+        }
+        List<String> inSync = monitor.inSync();
+        if (inSync.isEmpty()) {
+            return routed(PRIMARY, primary, "fallback");
+        }
+        String replica = inSync.get(Math.floorMod(next.getAndIncrement(), inSync.size()));
+        return routed(replica, replicas.get(replica), "read");
+    }
+
+    private DataSource routed(String name, DataSource dataSource, String reason) {
+        registry.counter(ROUTING_COUNTER, "datasource", name, "reason", reason).increment();
+        return dataSource;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? (T) this : primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,144 @@
+package com.zoomalan.libraryapi.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wraps the {@link DataSource} so every statement execution is timed for the {@link SlowStatementLog}.
+ * {@code unwrap} still reaches the pool, which the Hikari metrics binding relies on.
+ */
+@Component
+public class SlowStatementDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<SlowStatementLog> log;
+
+    public SlowStatementDataSourcePostProcessor(ObjectProvider<SlowStatementLog> log) {
+        this.log = log;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || Proxy.isProxyClass(bean.getClass())) {
+            return bean;
+        }
+        SlowStatementLog slowStatements = log.getIfAvailable();
+        if (slowStatements == null || !slowStatements.isEnabled()) {
+            return bean;
+        }
+        return proxy(DataSource.class, bean, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection
+                    ? proxy(Connection.class, result, new ConnectionHandler(slowStatements))
+                    : result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, TargetHandler handler) {
+        return (T) Proxy.newProxyInstance(SlowStatementDataSourcePostProcessor.class.getClassLoader(),
+                new Class<?>[]{type}, (proxy, method, args) -> handler.invoke(target, method, args));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TargetHandler {
+
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    private static class ConnectionHandler implements TargetHandler {
+
+        private final SlowStatementLog log;
+
+        ConnectionHandler(SlowStatementLog log) {
+            this.log = log;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            Object result = SlowStatementDataSourcePostProcessor.invoke(target, method, args);
+            if (!(result instanceof Statement)) {
+                return result;
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                    : result instanceof PreparedStatement ? PreparedStatement.class
+                    : Statement.class;
+            return proxy(type, result, new StatementHandler(log, sql));
+        }
+    }
+
+    /**
+     * Remembers the setter used for each bind parameter and times the {@code execute*} calls.
+     */
+    private static class StatementHandler implements TargetHandler {
+
+        private final SlowStatementLog log;
+        private final String sql;
+        private String[] parameters = new String[0];
+
+        StatementHandler(SlowStatementLog log, String sql) {
+            this.log = log;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                try {
+                    return SlowStatementDataSourcePostProcessor.invoke(target, method, args);
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    if (log.isSlow(elapsed)) {
+                        log.record(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql,
+                                shape(), elapsed);
+                    }
+                }
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.substring(3));
+            } else if (name.equals("clearParameters")) {
+                parameters = new String[0];
+            }
+            return SlowStatementDataSourcePostProcessor.invoke(target, method, args);
+        }
+
+        private void bind(int index, String type) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = type;
+        }
+
+        private List<String> shape() {
+            int length = parameters.length;
+            while (length > 0 && parameters[length - 1] == null) {
+                length--;
+            }
+            return length == 0 ? Collections.emptyList() : Arrays.asList(Arrays.copyOf(parameters, length));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.zoomalan.libraryapi.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code capacity} slowest JDBC statements that ran longer than the threshold since the last clear, kept in a
+ * min-heap on duration so a new statement only displaces the fastest one kept. Statements under the threshold are
+ * timed and then forgotten, without taking the lock.
+ */
+@Component
+public class SlowStatementLog {
+
+    private static final Comparator<SlowStatement> FASTEST_FIRST = Comparator.comparingDouble(SlowStatement::getMillis);
+
+    private final long thresholdNanos;
+    private final int capacity;
+    private final PriorityQueue<SlowStatement> statements;
+
+    public SlowStatementLog(@Value("${application.jdbc.slow-statement.threshold-millis:200}") long thresholdMillis,
+                            @Value("${application.jdbc.slow-statement.capacity:50}") int capacity) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.capacity = Math.max(capacity, 1);
+        this.statements = new PriorityQueue<>(this.capacity, FASTEST_FIRST);
+    }
+
+    /**
+     * @return false when the threshold is negative, which turns statement timing off
+     */
+    public boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    void record(String sql, List<String> parameters, long elapsedNanos) {
+        SlowStatement statement = new SlowStatement(sql, parameters, elapsedNanos / 1_000_000.0, LocalDateTime.now());
+        synchronized (statements) {
+            if (statements.size() < capacity) {
+                statements.add(statement);
+            } else if (statement.getMillis() > statements.peek().getMillis()) {
+                statements.poll();
+                statements.add(statement);
+            }
+        }
+    }
+
+    /**
+     * @return the recorded statements, slowest first
+     */
+    public List<SlowStatement> slowest() {
+        List<SlowStatement> recorded;
+        synchronized (statements) {
+            recorded = new ArrayList<>(statements);
+        }
+        recorded.sort(FASTEST_FIRST.reversed());
+        return recorded;
+    }
+
+    public void clear() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SlowStatement {
+
+        private final String sql;
+        /**
+         * Type of each bind parameter, e.g. {@code [Long, String]}, never the values themselves.
+         */
+        private final List<String> parameters;
+        private final double millis;
+        private final LocalDateTime executedAt;
+    }
+}
@@ -0,0 +1,83 @@
+package com.zoomalan.libraryapi.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reaches the JDK 21 virtual thread API reflectively, so the project still builds for Java 8 and
+ * only the {@code virtual-threads} profile needs a newer runtime.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return a factory of virtual threads named {@code prefix0}, {@code prefix1}, ...
+     * @throws IllegalStateException when the runtime has no virtual threads
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need a JDK 21 or later runtime, found "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    /**
+     * @return an executor starting a new virtual thread for every task
+     */
+    public static ExecutorService perTaskExecutor(String prefix) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory(prefix));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need a JDK 21 or later runtime", e);
+        }
+    }
+
+    /**
+     * @return how many carrier threads run virtual threads, as {@code -Djdk.virtualThreadScheduler.parallelism}
+     * sets or else one per processor
+     */
+    public static int carrierThreads() {
+        return Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Checks that virtual threads still have a free carrier when every one of {@code pinningConnections} is busy.
+     * A connection whose driver works inside {@code synchronized} blocks pins its carrier for the whole statement.
+     *
+     * @throws IllegalStateException when the connections could pin every carrier
+     */
+    public static void requireFreeCarrier(int pinningConnections) {
+        int carriers = carrierThreads();
+        if (pinningConnections >= carriers) {
+            throw new IllegalStateException(pinningConnections + " pooled connections can pin all " + carriers
+                    + " carrier threads; lower spring.datasource.hikari.maximum-pool-size or raise"
+                    + " -Djdk.virtualThreadScheduler.parallelism");
+        }
+    }
+
+    public static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
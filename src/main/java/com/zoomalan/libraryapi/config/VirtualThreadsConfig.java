@@ -0,0 +1,39 @@
+package com.zoomalan.libraryapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.task.TaskSchedulerCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * Runs servlet requests and {@code @Scheduled} methods on virtual threads, so a request blocked on
+ * JDBC no longer holds one of Tomcat's worker threads. Enabled by the {@code virtual-threads} profile.
+ * The Hikari pool, not the thread count, then bounds concurrent database work.
+ * <p>
+ * H2 runs every statement, including a {@code for update} waiting on a row lock, inside
+ * {@code synchronized (session)}, so each busy connection pins its carrier thread. Startup fails unless the
+ * primary and replica pools together hold fewer connections than there are carriers.
+ */
+@Configuration
+@ConditionalOnProperty("application.threads.virtual")
+public class VirtualThreadsConfig {
+
+    public VirtualThreadsConfig(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                @Value("${application.datasource.replica.urls:}") String replicaUrls) {
+        int pools = 1 + StringUtils.commaDelimitedListToStringArray(replicaUrls).length;
+        VirtualThreads.requireFreeCarrier(pools * poolSize);
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequests() {
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.perTaskExecutor("http-"));
+    }
+
+    @Bean
+    public TaskSchedulerCustomizer virtualThreadScheduling() {
+        return scheduler -> scheduler.setThreadFactory(VirtualThreads.factory("scheduling-"));
+    }
+}
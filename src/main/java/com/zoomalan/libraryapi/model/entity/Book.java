@@ -3,18 +3,36 @@ package com.zoomalan.libraryapi.model.entity;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.List;
 
+/**
+ * Read far more often than written, so kept in the second-level cache, by id and by isbn. The books of a page
+ * of loans that miss the cache are loaded together.
+ */
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
+@NaturalIdCache(region = Book.ISBN_CACHE_REGION)
+@BatchSize(size = 50)
 public class Book {
 
+    public static final String CACHE_REGION = "book";
+    public static final String ISBN_CACHE_REGION = "book-isbn";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -25,9 +43,15 @@ public class Book {
     @Column
     private String author;
 
-    @Column
+    @NaturalId
+    @Column(nullable = false, unique = true)
     private String isbn;
 
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "book")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Loan> loans;
 }
@@ -25,8 +25,8 @@ public class Loan {
     @Column(name = "customer_email")
     private String customerEmail;
 
-    @ManyToOne
-    @JoinColumn(name = "id_book")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_book", nullable = false)
     private Book book;
 
     @Column
@@ -1,14 +1,61 @@
 package com.zoomalan.libraryapi.model.repository;
 
+import com.zoomalan.libraryapi.api.dto.BookDTO;
 import com.zoomalan.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
     boolean existsByIsbn(String isbn);
 
-    Optional<Book> findByIsbn(String isbn);
+    @Query(" select b.isbn from Book as b where b.isbn in :isbns ")
+    List<String> findIsbnsIn(@Param("isbns") Collection<String> isbns);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query(value = " select new com.zoomalan.libraryapi.api.dto.BookDTO(b.id, b.title, b.author, b.isbn) " +
+            " from Book as b where ( :title is null or lower(b.title) like lower(concat('%', :title, '%')) ) " +
+            " and ( :author is null or lower(b.author) like lower(concat('%', :author, '%')) ) " +
+            " and ( :isbn is null or lower(b.isbn) like lower(concat('%', :isbn, '%')) ) ",
+            countQuery = " select count(b) from Book as b " +
+                    " where ( :title is null or lower(b.title) like lower(concat('%', :title, '%')) ) " +
+                    " and ( :author is null or lower(b.author) like lower(concat('%', :author, '%')) ) " +
+                    " and ( :isbn is null or lower(b.isbn) like lower(concat('%', :isbn, '%')) ) ")
+    Page<BookDTO> findDTOs(@Param("title") String title,
+                           @Param("author") String author,
+                           @Param("isbn") String isbn,
+                           Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query(" select b from Book as b order by b.id ")
+    Stream<Book> streamAll();
+
+    @Query(" select b from Book as b where ( :afterId is null or b.id > :afterId ) " +
+            " and ( :title is null or lower(b.title) like lower(concat('%', :title, '%')) ) " +
+            " and ( :author is null or lower(b.author) like lower(concat('%', :author, '%')) ) " +
+            " and ( :isbn is null or lower(b.isbn) like lower(concat('%', :isbn, '%')) ) ")
+    Slice<Book> findAfter(@Param("afterId") Long afterId,
+                          @Param("title") String title,
+                          @Param("author") String author,
+                          @Param("isbn") String isbn,
+                          Pageable pageable);
 }
@@ -0,0 +1,13 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.Book;
+
+import java.util.Optional;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Looks the isbn up through the natural-id cache, so a cached book costs no statement.
+     */
+    Optional<Book> findByIsbn(String isbn);
+}
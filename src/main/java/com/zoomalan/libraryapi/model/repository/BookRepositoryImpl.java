@@ -0,0 +1,25 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.Book;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+
+class BookRepositoryImpl implements BookRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    BookRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Book> findByIsbn(String isbn) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Book.class)
+                .loadOptional(isbn);
+    }
+}
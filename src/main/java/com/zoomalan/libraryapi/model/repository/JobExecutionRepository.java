@@ -0,0 +1,16 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.JobExecution;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface JobExecutionRepository extends JpaRepository<JobExecution, Long> {
+
+    Optional<JobExecution> findFirstByJobNameAndFinishedAtIsNullOrderByIdDesc(String jobName);
+
+    boolean existsByJobNameAndDueDate(String jobName, LocalDate dueDate);
+}
@@ -1,29 +1,53 @@
 package com.zoomalan.libraryapi.model.repository;
 
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
 import com.zoomalan.libraryapi.model.entity.Book;
 import com.zoomalan.libraryapi.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanRepositoryCustom {
 
     @Query(value = " select case when ( count(l.id) > 0 ) then true else false end " +
             " from Loan l where l.book = :book and ( l.returned is null or l.returned is false ) ")
     boolean existsByBookAndNotReturned(@Param("book") Book book);
 
-    @Query(value = " select l from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer ")
-    Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+    @Query(value = " select new com.zoomalan.libraryapi.api.dto.LoanDTO(l.id, l.customer, l.customerEmail, " +
+            " b.id, b.title, b.author, b.isbn) " +
+            " from Loan as l join l.book as b where b.id = :bookId ",
+            countQuery = " select count(l) from Loan as l where l.book.id = :bookId ")
+    Page<LoanDTO> findDTOsByBookId(@Param("bookId") Long bookId, Pageable pageable);
 
-    Page<Loan> findByBook(Book book, Pageable pageable);
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query(" select l from Loan as l join fetch l.book order by l.id ")
+    Stream<Loan> streamAll();
 
     @Query(" select l from Loan as l where l.loanDate <= :threeDaysAgo and ( l.returned is null or l.returned is false ) ")
     List<Loan> findByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    @Query(" select l from Loan as l where l.loanDate <= :dueDate and ( l.returned is null or l.returned is false ) " +
+            " and ( :afterId is null or l.id > :afterId ) ")
+    List<Loan> findLateLoansAfter(@Param("dueDate") LocalDate dueDate,
+                                  @Param("afterId") Long afterId,
+                                  Pageable pageable);
 }
@@ -0,0 +1,77 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface LoanRepositoryCustom {
+
+    /**
+     * Inserts an open loan for the book with the given isbn in a single statement.
+     *
+     * @return the new loan, detached, with its book holding only the id; empty when no book has that isbn
+     * @throws org.springframework.dao.DuplicateKeyException when the book already has an open loan
+     */
+    Optional<Loan> checkout(String isbn, String customer, String customerEmail, LocalDate loanDate);
+
+    /**
+     * Inserts an open loan for each of the given isbns in one JDBC batch, each insert as in {@link #checkout}.
+     *
+     * @return the new loans by isbn, detached, with their books holding only the id; isbns naming no book are absent
+     * @throws org.springframework.dao.DuplicateKeyException when one of the books already has an open loan
+     */
+    Map<String, Loan> checkoutAll(List<String> isbns, String customer, String customerEmail, LocalDate loanDate);
+
+    /**
+     * Sets whether the loan is returned in a single statement, leaving it alone when it already is, with an
+     * unset flag counting as not returned.
+     *
+     * @return 1 when the loan changed, 0 when it did not or no loan has that id
+     * @throws org.springframework.dao.DataIntegrityViolationException when reopening a loan of a book that
+     *                                                                 already has another open loan
+     */
+    int setReturned(Long id, boolean returned);
+
+    /**
+     * Finds the loans matching the filter, with their books, using a {@link LoanSearchQuery} for the page of ids.
+     *
+     * @throws org.springframework.dao.InvalidDataAccessApiUsageException when sorting by something other than
+     *                                                                    a loan column
+     */
+    Page<LoanDTO> searchDTOs(LoanFilterDTO filter, Pageable pageable);
+
+    /**
+     * Finds up to {@code size} matching loans with an id greater than {@code afterId}, in id order.
+     */
+    Slice<Loan> searchAfter(LoanFilterDTO filter, Long afterId, int size);
+
+    /**
+     * Reads the given loans and locks them for the rest of the transaction.
+     *
+     * @return the loans found, detached, with only their id, book id and returned flag
+     */
+    List<Loan> lockForReturn(Collection<Long> ids);
+
+    /**
+     * Marks the given loans returned in a single statement, leaving those already returned alone.
+     *
+     * @return how many loans were marked
+     */
+    int markReturned(Collection<Long> ids);
+
+    /**
+     * Finds the open loan of each book with one of the given isbns.
+     *
+     * @return the open loan id by isbn, mapped to null for a book with no open loan; isbns naming no book are absent
+     */
+    Map<String, Long> findOpenLoanIdsByIsbn(Collection<String> isbns);
+}
@@ -0,0 +1,205 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import org.hibernate.Hibernate;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.sql.Date;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+class LoanRepositoryImpl implements LoanRepositoryCustom {
+
+    private static final String CHECKOUT = " insert into loan (customer, customer_email, id_book, loan_date, returned) " +
+            " select ?, ?, b.id, ?, false from book b where b.isbn = ? ";
+
+    private static final String WITH_LOAN = " join loan l on l.id = p.id ";
+    private static final String WITH_BOOK = " join loan l on l.id = p.id join book b on b.id = l.id_book ";
+    private static final String LOAN_DTO_COLUMNS = " l.id, l.customer, l.customer_email, b.id as book_id, b.title, b.author, b.isbn ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final EntityManager entityManager;
+
+    LoanRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<Loan> checkout(String isbn, String customer, String customerEmail, LocalDate loanDate) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int inserted = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(CHECKOUT, new String[]{"ID", "ID_BOOK"});
+            statement.setString(1, customer);
+            statement.setString(2, customerEmail);
+            statement.setDate(3, Date.valueOf(loanDate));
+            statement.setString(4, isbn);
+            return statement;
+        }, keyHolder);
+        if (inserted == 0) {
+            return Optional.empty();
+        }
+        Map<String, Object> keys = keyHolder.getKeys();
+        return Optional.of(Loan.builder()
+                .id(((Number) keys.get("ID")).longValue())
+                .book(Book.builder().id(((Number) keys.get("ID_BOOK")).longValue()).build())
+                .customer(customer)
+                .customerEmail(customerEmail)
+                .loanDate(loanDate)
+                .returned(false)
+                .build());
+    }
+
+    @Override
+    public Map<String, Loan> checkoutAll(List<String> isbns, String customer, String customerEmail, LocalDate loanDate) {
+        return jdbcTemplate.execute((Connection connection) -> {
+            Map<String, Loan> loans = new LinkedHashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(CHECKOUT, new String[]{"ID", "ID_BOOK"})) {
+                for (String isbn : isbns) {
+                    statement.setString(1, customer);
+                    statement.setString(2, customerEmail);
+                    statement.setDate(3, Date.valueOf(loanDate));
+                    statement.setString(4, isbn);
+                    statement.addBatch();
+                }
+                int[] inserted = statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    // an isbn naming no book inserts nothing and has no key
+                    for (int i = 0; i < inserted.length; i++) {
+                        if (inserted[i] > 0 && keys.next()) {
+                            loans.put(isbns.get(i), Loan.builder()
+                                    .id(keys.getLong("ID"))
+                                    .book(Book.builder().id(keys.getLong("ID_BOOK")).build())
+                                    .customer(customer)
+                                    .customerEmail(customerEmail)
+                                    .loanDate(loanDate)
+                                    .returned(false)
+                                    .build());
+                        }
+                    }
+                }
+            }
+            return loans;
+        });
+    }
+
+    @Override
+    public int setReturned(Long id, boolean returned) {
+        return jdbcTemplate.update(" update loan set returned = ? where id = ? and coalesce(returned, false) <> ? ",
+                returned, id, returned);
+    }
+
+    @Override
+    public List<Loan> lockForReturn(Collection<Long> ids) {
+        return namedJdbcTemplate.query(" select id, id_book, returned from loan where id in (:ids) for update ",
+                Collections.singletonMap("ids", ids),
+                (rs, row) -> Loan.builder()
+                        .id(rs.getLong("id"))
+                        .book(Book.builder().id(rs.getLong("id_book")).build())
+                        .returned(rs.getBoolean("returned"))
+                        .build());
+    }
+
+    @Override
+    public int markReturned(Collection<Long> ids) {
+        return namedJdbcTemplate.update(" update loan set returned = true where id in (:ids) " +
+                " and ( returned is null or returned = false ) ", Collections.singletonMap("ids", ids));
+    }
+
+    @Override
+    public Map<String, Long> findOpenLoanIdsByIsbn(Collection<String> isbns) {
+        Map<String, Long> openLoans = new HashMap<>();
+        namedJdbcTemplate.query(" select b.isbn, l.id from book b left join loan l on l.id_book = b.id " +
+                        " and ( l.returned is null or l.returned = false ) where b.isbn in (:isbns) ",
+                Collections.singletonMap("isbns", isbns),
+                rs -> {
+                    openLoans.put(rs.getString("isbn"), rs.getObject("id", Long.class));
+                });
+        return openLoans;
+    }
+
+    /**
+     * Flat rows of loan and book columns, joined in the page's statement: no entity is hydrated, so the books
+     * neither come from nor go to the second-level cache.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public Page<LoanDTO> searchDTOs(LoanFilterDTO filter, Pageable pageable) {
+        LoanSearchQuery search = new LoanSearchQuery(filter);
+        Query query = query(search, search.page(pageable.getSort(), LOAN_DTO_COLUMNS, WITH_BOOK),
+                pageable.getPageSize(), pageable.getOffset());
+        List<LoanDTO> loans = ((List<Object[]>) query.getResultList()).stream()
+                .map(row -> new LoanDTO(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                        ((Number) row[3]).longValue(), (String) row[4], (String) row[5], (String) row[6]))
+                .collect(Collectors.toList());
+        return PageableExecutionUtils.getPage(loans, pageable, () -> count(search));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Loan> searchAfter(LoanFilterDTO filter, Long afterId, int size) {
+        List<Loan> loans = loans(new LoanSearchQuery(filter, afterId), Sort.by("id"), size + 1, 0);
+        boolean hasNext = loans.size() > size;
+        return new SliceImpl<>(hasNext ? loans.subList(0, size) : loans, Pageable.unpaged(), hasNext);
+    }
+
+    /**
+     * The loans in one statement, native because a JPA query cannot select from a union. Their books come from
+     * the second-level cache, the ones missing there in batches of {@link Book}'s batch size.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Loan> loans(LoanSearchQuery search, Sort sort, int limit, long offset) {
+        List<Loan> loans = query(search, search.page(sort, "{l.*}", WITH_LOAN), limit, offset)
+                .unwrap(NativeQuery.class)
+                .addEntity("l", Loan.class)
+                .getResultList();
+        loans.forEach(loan -> Hibernate.initialize(loan.getBook()));
+        return loans;
+    }
+
+    /**
+     * Runs through the entity manager rather than the JdbcTemplate, so pending changes are flushed first.
+     */
+    private Query query(LoanSearchQuery search, String sql, int limit, long offset) {
+        Query query = entityManager.createNativeQuery(sql);
+        search.parameters().forEach(query::setParameter);
+        query.setParameter("limit", limit);
+        query.setParameter("offset", offset);
+        return query;
+    }
+
+    private long count(LoanSearchQuery search) {
+        Query query = entityManager.createNativeQuery(search.count());
+        search.parameters().forEach(query::setParameter);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+}
@@ -0,0 +1,157 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import com.zoomalan.libraryapi.exceptions.BusinessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * SQL selecting the loans matching a {@link LoanFilterDTO}, with a predicate only for each
+ * field given. An OR across the loan and book tables leaves the database nothing but a full scan, so every
+ * alternative (isbn, customer, email) becomes its own branch, driven by its own index, and the branches
+ * are combined with UNION. The range and status predicates are repeated in every branch.
+ */
+public final class LoanSearchQuery {
+
+    private static final String COLUMNS = " l.id, l.customer, l.customer_email, l.loan_date, l.returned ";
+
+    /**
+     * The loan column behind each property a search may sort by.
+     */
+    public static final Map<String, String> SORTABLE;
+
+    static {
+        Map<String, String> sortable = new HashMap<>();
+        sortable.put("id", "id");
+        sortable.put("customer", "customer");
+        sortable.put("email", "customer_email");
+        sortable.put("customerEmail", "customer_email");
+        sortable.put("loanDate", "loan_date");
+        sortable.put("returned", "returned");
+        SORTABLE = Collections.unmodifiableMap(sortable);
+    }
+
+    private final List<String> branches = new ArrayList<>();
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    public LoanSearchQuery(LoanFilterDTO filter) {
+        this(filter, null);
+    }
+
+    /**
+     * @param afterId when not null, only loans with a greater id match, for keyset pagination
+     */
+    public LoanSearchQuery(LoanFilterDTO filter, Long afterId) {
+        List<String> narrowing = new ArrayList<>();
+        if (filter.getLoanDateFrom() != null) {
+            narrowing.add(" l.loan_date >= :loanDateFrom ");
+            parameters.put("loanDateFrom", filter.getLoanDateFrom());
+        }
+        if (filter.getLoanDateTo() != null) {
+            narrowing.add(" l.loan_date <= :loanDateTo ");
+            parameters.put("loanDateTo", filter.getLoanDateTo());
+        }
+        if (filter.getReturned() != null) {
+            narrowing.add(filter.getReturned() ? " l.returned = true " : " ( l.returned is null or l.returned = false ) ");
+        }
+        if (afterId != null) {
+            narrowing.add(" l.id > :afterId ");
+            parameters.put("afterId", afterId);
+        }
+
+        if (StringUtils.hasText(filter.getIsbn())) {
+            branch(" from loan l join book b on b.id = l.id_book where b.isbn = :isbn ", narrowing);
+            parameters.put("isbn", filter.getIsbn());
+        }
+        if (StringUtils.hasText(filter.getCustomer())) {
+            branch(" from loan l where l.customer = :customer ", narrowing);
+            parameters.put("customer", filter.getCustomer());
+        }
+        if (StringUtils.hasText(filter.getEmail())) {
+            branch(" from loan l where l.customer_email = :email ", narrowing);
+            parameters.put("email", filter.getEmail());
+        }
+        if (branches.isEmpty()) {
+            branch(" from loan l where 1 = 1 ", narrowing);
+        }
+    }
+
+    /**
+     * Whether the filter names an isbn, customer, email or loan date bound, each of which an index can drive.
+     * Without one, the search scans every loan.
+     */
+    public static boolean isIndexed(LoanFilterDTO filter) {
+        return StringUtils.hasText(filter.getIsbn()) || StringUtils.hasText(filter.getCustomer())
+                || StringUtils.hasText(filter.getEmail())
+                || filter.getLoanDateFrom() != null || filter.getLoanDateTo() != null;
+    }
+
+    private void branch(String from, List<String> narrowing) {
+        StringBuilder branch = new StringBuilder(from);
+        narrowing.forEach(predicate -> branch.append(" and").append(predicate));
+        branches.add(branch.toString());
+    }
+
+    /**
+     * Selects the given columns of the matching loans, aliased {@code l}.
+     */
+    private String select(String columns) {
+        if (branches.size() == 1) {
+            return " select " + columns + branches.get(0);
+        }
+        String union = branches.stream()
+                .map(branch -> " select" + COLUMNS + branch)
+                .collect(Collectors.joining(" union "));
+        return " select " + columns + " from (" + union + ") l ";
+    }
+
+    /**
+     * Every matching id, unordered, to use as an {@code in} subquery.
+     */
+    public String ids() {
+        return select("l.id");
+    }
+
+    /**
+     * Selects the given columns from one page of matching loans, aliased {@code p} and with the loan columns
+     * only, joined as needed. Binds {@code :limit} and {@code :offset} besides {@link #parameters()}. The id
+     * breaks ties so pages never overlap.
+     *
+     * @throws BusinessException when sorting by something other than a loan column
+     */
+    public String page(Sort sort, String columns, String joins) {
+        return " select " + columns + " from (" + select(COLUMNS) + orderBy(sort, "l") + " limit :limit offset :offset ) p "
+                + joins + orderBy(sort, "p");
+    }
+
+    private static String orderBy(Sort sort, String alias) {
+        List<String> order = new ArrayList<>();
+        for (Sort.Order by : sort) {
+            String column = SORTABLE.get(by.getProperty());
+            if (column == null) {
+                throw new BusinessException("Cannot sort loans by " + by.getProperty());
+            }
+            order.add(alias + "." + column + (by.isAscending() ? " asc" : " desc"));
+        }
+        if (order.stream().noneMatch(column -> column.startsWith(alias + ".id "))) {
+            order.add(alias + ".id asc");
+        }
+        return " order by " + String.join(", ", order);
+    }
+
+    public String count() {
+        return select("count(*)");
+    }
+
+    public Map<String, Object> parameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+}
@@ -0,0 +1,51 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long>, OutboxMessageRepositoryCustom {
+
+    /**
+     * Leases up to {@code batchSize} pending messages to {@code claimedBy}. H2 has no
+     * {@code FOR UPDATE SKIP LOCKED}, so the lease condition is checked again on the rows being
+     * updated: when two dispatchers race for the same rows only one of them gets each row.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = " update outbox_message set claimed_by = :claimedBy, claimed_until = :leaseUntil " +
+            " where id in ( select id from outbox_message where sent_at is null and attempts < :maxAttempts " +
+            "     and ( claimed_until is null or claimed_until < :now ) order by id limit :batchSize ) " +
+            " and sent_at is null and ( claimed_until is null or claimed_until < :now ) ")
+    int claim(@Param("claimedBy") String claimedBy,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil,
+              @Param("maxAttempts") int maxAttempts,
+              @Param("batchSize") int batchSize);
+
+    List<OutboxMessage> findByClaimedByOrderById(String claimedBy);
+
+    @Transactional
+    @Modifying
+    @Query(" update OutboxMessage m set m.sentAt = :sentAt, m.claimedBy = null, m.claimedUntil = null " +
+            " where m.id in :ids ")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Gives the message back with one more attempt counted; it can be claimed again after {@code retryAt}.
+     */
+    @Transactional
+    @Modifying
+    @Query(" update OutboxMessage m set m.attempts = m.attempts + 1, m.lastError = :error, " +
+            " m.claimedBy = null, m.claimedUntil = :retryAt where m.id = :id ")
+    int release(@Param("id") Long id, @Param("error") String error, @Param("retryAt") LocalDateTime retryAt);
+}
@@ -0,0 +1,13 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+
+import java.util.List;
+
+public interface OutboxMessageRepositoryCustom {
+
+    /**
+     * Inserts the messages in one JDBC batch, joining the caller's transaction.
+     */
+    void enqueue(List<OutboxMessage> messages);
+}
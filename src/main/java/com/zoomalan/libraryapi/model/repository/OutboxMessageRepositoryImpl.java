@@ -0,0 +1,31 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class OutboxMessageRepositoryImpl implements OutboxMessageRepositoryCustom {
+
+    private static final String INSERT_MESSAGE = " insert into outbox_message " +
+            " (sender, recipient, subject, body, created_at, attempts) values (?, ?, ?, ?, ?, 0) ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    OutboxMessageRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void enqueue(List<OutboxMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE, messages.stream()
+                .map(message -> new Object[]{message.getSender(), message.getRecipient(), message.getSubject(),
+                        message.getBody(), Timestamp.valueOf(message.getCreatedAt())})
+                .collect(Collectors.toList()));
+    }
+}
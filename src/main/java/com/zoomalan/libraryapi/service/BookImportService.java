@@ -0,0 +1,11 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.api.dto.BookImportResultDTO;
+
+import java.io.IOException;
+import java.io.Reader;
+
+public interface BookImportService {
+
+    BookImportResultDTO importBooks(Reader reader, DataFormat format) throws IOException;
+}
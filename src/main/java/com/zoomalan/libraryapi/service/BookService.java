@@ -1,8 +1,10 @@
 package com.zoomalan.libraryapi.service;
 
+import com.zoomalan.libraryapi.api.dto.BookDTO;
 import com.zoomalan.libraryapi.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.Optional;
 
@@ -16,7 +18,9 @@ public interface BookService {
 
     Book update(Book book);
 
-    Page<Book> find(Book filter, Pageable pageRequest);
+    Page<BookDTO> findAsDTO(BookDTO filter, Pageable pageRequest);
+
+    Slice<Book> findAfter(Book filter, Long afterId, int size);
 
     Optional<Book> getBookByIsbn(String isbn);
 }
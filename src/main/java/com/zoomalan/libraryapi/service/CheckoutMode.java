@@ -0,0 +1,15 @@
+package com.zoomalan.libraryapi.service;
+
+/**
+ * What a batch checkout does when some of its books cannot be lent.
+ */
+public enum CheckoutMode {
+    /**
+     * Lends nothing unless every book can be lent.
+     */
+    ALL_OR_NOTHING,
+    /**
+     * Lends the books that can be lent and reports the rest.
+     */
+    PARTIAL
+}
@@ -0,0 +1,5 @@
+package com.zoomalan.libraryapi.service;
+
+public enum DataFormat {
+    NDJSON, CSV
+}
@@ -3,5 +3,10 @@ package com.zoomalan.libraryapi.service;
 import java.util.List;
 
 public interface EmailService {
+
+    /**
+     * Records one message per address in the outbox, as part of the caller's transaction.
+     * The messages are sent once that transaction commits.
+     */
     void sendMails(String message, List<String> mailsList);
 }
@@ -0,0 +1,11 @@
+package com.zoomalan.libraryapi.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ExportService {
+
+    void exportBooks(OutputStream out, DataFormat format) throws IOException;
+
+    void exportLoans(OutputStream out, DataFormat format) throws IOException;
+}
@@ -1,25 +1,61 @@
 package com.zoomalan.libraryapi.service;
 
 
+import com.zoomalan.libraryapi.api.dto.BatchCheckoutResultDTO;
+import com.zoomalan.libraryapi.api.dto.BulkReturnResultDTO;
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
 import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
-import com.zoomalan.libraryapi.model.entity.Book;
 import com.zoomalan.libraryapi.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 public interface LoanService {
     Loan save(Loan loan);
 
+    /**
+     * Lends the book with the given isbn without reading it first.
+     *
+     * @return the new loan id, or empty when no book has that isbn
+     */
+    Optional<Long> checkout(String isbn, String customer, String customerEmail);
+
+    /**
+     * Lends several books to one customer: one query finds which isbns can be lent and one JDBC batch
+     * inserts their loans.
+     *
+     * @throws com.zoomalan.libraryapi.exceptions.BusinessException when no isbn is given, or when other
+     *                                                               checkouts keep taking the same books
+     */
+    BatchCheckoutResultDTO checkoutAll(List<String> isbns, String customer, String customerEmail, CheckoutMode mode);
+
     Optional<Loan> getById(Long id);
 
     Loan update(Loan loan);
 
-    Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable);
+    /**
+     * Marks the given loans returned, with one update per chunk. Isbns stand for the open loan of their book.
+     * Each chunk commits on its own; a chunk that fails is rolled back and reported in
+     * {@link BulkReturnResultDTO#getFailedIds()}, and the other chunks still go through.
+     */
+    BulkReturnResultDTO returnAll(List<Long> ids, List<String> isbns);
+
+    /**
+     * @throws com.zoomalan.libraryapi.exceptions.BusinessException when the filter has no isbn, customer, email
+     *                                                              or loan date bound
+     */
+    Page<LoanDTO> findAsDTO(LoanFilterDTO filterDTO, Pageable pageable);
+
+    Slice<Loan> findAfter(LoanFilterDTO filterDTO, Long afterId, int size);
 
-    Page<Loan> getLoansByBook(Book book, Pageable pageable);
+    Page<LoanDTO> getLoansByBookAsDTO(Long bookId, Pageable pageable);
 
-    List<Loan> getAllLateLoans();
+    /**
+     * Next chunk of loans taken on or before {@code dueDate} and not returned, in id order.
+     */
+    List<Loan> getLateLoansAfter(LocalDate dueDate, Long afterId, int size);
 }
@@ -0,0 +1,34 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.api.dto.BookLoanStatsDTO;
+import com.zoomalan.libraryapi.api.dto.LoanStatsDTO;
+
+import java.time.LocalDate;
+
+public interface LoanStatsService {
+
+    /**
+     * Counts a new loan once the surrounding transaction commits, or right away outside one.
+     */
+    void loanCreated(Long bookId, LocalDate loanDate, boolean open);
+
+    /**
+     * Counts a loan being returned, or reopened when {@code returned} is false, once the surrounding
+     * transaction commits.
+     */
+    void loanReturned(Long bookId, boolean returned);
+
+    LoanStatsDTO getStats();
+
+    BookLoanStatsDTO getBookStats(Long bookId);
+
+    /**
+     * Adds the counts gathered since the last flush to the summary tables.
+     */
+    void flush();
+
+    /**
+     * Recomputes the summary tables from every loan and reloads the counters from them.
+     */
+    void rebuild();
+}
@@ -1,34 +1,143 @@
 package com.zoomalan.libraryapi.service;
 
+import com.zoomalan.libraryapi.model.entity.JobExecution;
 import com.zoomalan.libraryapi.model.entity.Loan;
-import lombok.RequiredArgsConstructor;
+import com.zoomalan.libraryapi.model.repository.JobExecutionRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class ScheduleService {
 
-    private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
+    static final String LATE_LOANS_JOB = "lateLoans";
 
-    @Value(value = "${application.mail.lateloans.message}")
-    private String message;
+    private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
+    private static final int LOAN_DAYS = 4;
 
+    private final String message;
     private final LoanService loanService;
     private final EmailService emailService;
+    private final JobExecutionRepository jobExecutionRepository;
+    private final SchedulerLockService lockService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration lease;
+
+    public ScheduleService(@Value("${application.mail.lateloans.message}") String message,
+                           LoanService loanService,
+                           EmailService emailService,
+                           JobExecutionRepository jobExecutionRepository,
+                           SchedulerLockService lockService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${application.jobs.late-loans.chunk-size:500}") int chunkSize,
+                           @Value("${application.jobs.late-loans.lease-seconds:300}") long leaseSeconds) {
+        this.message = message;
+        this.loanService = loanService;
+        this.emailService = emailService;
+        this.jobExecutionRepository = jobExecutionRepository;
+        this.lockService = lockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+    }
 
+    /**
+     * Runs on at most one node at a time; the others skip the tick while the lock is held, and at most
+     * once per due date.
+     */
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendMailToLateLoans() {
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
+        lockService.runLocked(LATE_LOANS_JOB, lease, token -> {
+            resume(token);
 
-        List<String> mailsList = allLateLoans.stream()
-                .map(Loan::getCustomerEmail)
-                .collect(Collectors.toList());
+            LocalDate dueDate = LocalDate.now().minusDays(LOAN_DAYS);
+            // a node whose tick fires after another node already finished today's run must not repeat it
+            if (jobExecutionRepository.existsByJobNameAndDueDate(LATE_LOANS_JOB, dueDate)) {
+                log.info("Late loans run for {} already done by another node", dueDate);
+                return;
+            }
+            JobExecution execution = jobExecutionRepository.save(JobExecution.builder()
+                    .jobName(LATE_LOANS_JOB)
+                    .dueDate(dueDate)
+                    .startedAt(LocalDateTime.now())
+                    .build());
+            run(execution, token);
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRun() {
+        lockService.runLocked(LATE_LOANS_JOB, lease, this::resume);
+    }
+
+    private void resume(long token) {
+        jobExecutionRepository.findFirstByJobNameAndFinishedAtIsNullOrderByIdDesc(LATE_LOANS_JOB)
+                .ifPresent(execution -> {
+                    log.info("Resuming late loans run {} after loan {}", execution.getId(), execution.getLastLoanId());
+                    try {
+                        run(execution, token);
+                    } catch (RuntimeException e) {
+                        log.error("Late loans run {} failed again after loan {}",
+                                execution.getId(), execution.getLastLoanId(), e);
+                    }
+                });
+    }
+
+    /**
+     * Reads the late loans in keyset chunks. Each chunk's outbox messages and the checkpoint past it
+     * are committed together, so a resumed run neither skips nor repeats a notification. Every commit
+     * first renews the lease under the fencing token, so a node that lost the lock cannot write.
+     */
+    private void run(JobExecution execution, long token) {
+        Long afterId = execution.getLastLoanId();
+        List<Loan> chunk;
+        do {
+            chunk = loanService.getLateLoansAfter(execution.getDueDate(), afterId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            Long lastId = chunk.get(chunk.size() - 1).getId();
+            long processed = execution.getProcessed() + chunk.size();
+            List<String> mails = chunk.stream()
+                    .map(Loan::getCustomerEmail)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+
+            transactionTemplate.execute(status -> {
+                fence(token);
+                emailService.sendMails(message, mails);
+                execution.setLastLoanId(lastId);
+                execution.setProcessed(processed);
+                return jobExecutionRepository.save(execution);
+            });
+            afterId = lastId;
+        } while (chunk.size() == chunkSize);
+
+        transactionTemplate.execute(status -> {
+            fence(token);
+            execution.setFinishedAt(LocalDateTime.now());
+            return jobExecutionRepository.save(execution);
+        });
+        log.info("Late loans run {} queued mail for {} loans", execution.getId(), execution.getProcessed());
+    }
 
-        emailService.sendMails(message, mailsList);
+    private void fence(long token) {
+        if (!lockService.extend(LATE_LOANS_JOB, token, lease)) {
+            throw new IllegalStateException("Late loans lock was taken over by another node");
+        }
     }
 }
@@ -0,0 +1,20 @@
+package com.zoomalan.libraryapi.service;
+
+import java.time.Duration;
+import java.util.function.LongConsumer;
+
+public interface SchedulerLockService {
+
+    /**
+     * Runs the task only if this node can take the named lock, passing it the fencing token it was granted.
+     *
+     * @return whether the task ran
+     */
+    boolean runLocked(String name, Duration lease, LongConsumer task);
+
+    /**
+     * Pushes the lease forward as long as the lock is still held with {@code token}. Call it inside the
+     * transaction that writes the job's results, so a node whose lease was taken over cannot commit them.
+     */
+    boolean extend(String name, long token, Duration lease);
+}
@@ -0,0 +1,262 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.BookImportResultDTO;
+import com.zoomalan.libraryapi.api.dto.BookImportRowDTO;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.service.BookImportService;
+import com.zoomalan.libraryapi.service.DataFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BookImportServiceImpl implements BookImportService {
+
+    private static final String INSERT_BOOK = "insert into book (title, author, isbn) values (?, ?, ?)";
+    private static final String CSV_HEADER = "title,author,isbn";
+
+    private final BookRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache secondLevelCache;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int maxRejectedRows;
+
+    public BookImportServiceImpl(BookRepository repository,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 EntityManagerFactory entityManagerFactory,
+                                 ObjectMapper objectMapper,
+                                 Validator validator,
+                                 @Value("${application.books.import.chunk-size:500}") int chunkSize,
+                                 @Value("${application.books.import.max-rejected-rows:1000}") int maxRejectedRows) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.maxRejectedRows = maxRejectedRows;
+    }
+
+    @Override
+    public BookImportResultDTO importBooks(Reader reader, DataFormat format) throws IOException {
+        long start = System.nanoTime();
+        long total = 0;
+        long imported = 0;
+        Rejections rejections = new Rejections(maxRejectedRows);
+        Map<Long, BookDTO> chunk = new LinkedHashMap<>();
+
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        long lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || (format == DataFormat.CSV && lineNumber == 1 && isCsvHeader(line))) {
+                continue;
+            }
+            total++;
+            BookDTO dto = parse(line, format);
+            if (dto == null) {
+                rejections.add(lineNumber, null, "Malformed row");
+                continue;
+            }
+            String violation = validate(dto);
+            if (violation != null) {
+                rejections.add(lineNumber, dto.getIsbn(), violation);
+                continue;
+            }
+            chunk.put(lineNumber, dto);
+            if (chunk.size() >= chunkSize) {
+                imported += flush(chunk, rejections);
+            }
+        }
+        imported += flush(chunk, rejections);
+
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        double rowsPerSecond = total * 1_000_000_000d / elapsedNanos;
+        log.info("Imported {} of {} books in {} ms ({} rows/s)",
+                imported, total, elapsedNanos / 1_000_000, Math.round(rowsPerSecond));
+
+        return BookImportResultDTO.builder()
+                .total(total)
+                .imported(imported)
+                .rejected(rejections.count)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .rowsPerSecond(rowsPerSecond)
+                .rejectedRows(rejections.rows)
+                .build();
+    }
+
+    /**
+     * Inserts the chunk in one JDBC batch, skipping isbns repeated inside the chunk
+     * or already registered, which are looked up with a single IN query.
+     */
+    private int flush(Map<Long, BookDTO> chunk, Rejections rejections) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        Set<String> isbns = chunk.values().stream().map(BookDTO::getIsbn).collect(Collectors.toSet());
+        Set<String> registered = new HashSet<>(repository.findIsbnsIn(isbns));
+
+        Map<Long, BookDTO> batch = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        chunk.forEach((lineNumber, dto) -> {
+            if (registered.contains(dto.getIsbn())) {
+                rejections.add(lineNumber, dto.getIsbn(), "Isbn already registered");
+            } else if (!seen.add(dto.getIsbn())) {
+                rejections.add(lineNumber, dto.getIsbn(), "Isbn duplicated in import");
+            } else {
+                batch.put(lineNumber, dto);
+            }
+        });
+        chunk.clear();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        int imported;
+        try {
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_BOOK, batch.values().stream()
+                    .map(BookImportServiceImpl::insertArgs)
+                    .collect(Collectors.toList())));
+            imported = batch.size();
+        } catch (DataIntegrityViolationException e) {
+            // an isbn got registered since the lookup, or a row breaks a column constraint, and the whole batch
+            // rolled back; find the offending rows one by one
+            imported = insertOneByOne(batch, rejections);
+        }
+        // Hibernate does not see these inserts, so cached book searches would miss the new rows
+        secondLevelCache.evictQueryRegions();
+        return imported;
+    }
+
+    private int insertOneByOne(Map<Long, BookDTO> rows, Rejections rejections) {
+        int imported = 0;
+        for (Map.Entry<Long, BookDTO> row : rows.entrySet()) {
+            try {
+                transactionTemplate.execute(status -> jdbcTemplate.update(INSERT_BOOK, insertArgs(row.getValue())));
+                imported++;
+            } catch (DuplicateKeyException e) {
+                rejections.add(row.getKey(), row.getValue().getIsbn(), "Isbn already registered");
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Book import rejected line {}: {}", row.getKey(), e.getMostSpecificCause().getMessage());
+                rejections.add(row.getKey(), row.getValue().getIsbn(), "Row violates a database constraint");
+            }
+        }
+        return imported;
+    }
+
+    private static Object[] insertArgs(BookDTO dto) {
+        return new Object[]{dto.getTitle(), dto.getAuthor(), dto.getIsbn()};
+    }
+
+    private BookDTO parse(String line, DataFormat format) {
+        if (format == DataFormat.NDJSON) {
+            try {
+                return objectMapper.readValue(line, BookDTO.class);
+            } catch (JsonProcessingException e) {
+                return null;
+            }
+        }
+        List<String> fields = parseCsvLine(line);
+        if (fields == null || fields.size() != 3) {
+            return null;
+        }
+        return BookDTO.builder().title(fields.get(0)).author(fields.get(1)).isbn(fields.get(2)).build();
+    }
+
+    private String validate(BookDTO dto) {
+        Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.replace(" ", "").equalsIgnoreCase(CSV_HEADER);
+    }
+
+    /**
+     * Splits a CSV line, honouring double-quoted fields with escaped quotes.
+     * Returns {@code null} when a quoted field is not closed.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Counts every rejected row but keeps only the first few, so a large bad file cannot fill the heap.
+     */
+    private static final class Rejections {
+
+        private final int max;
+        private final List<BookImportRowDTO> rows = new ArrayList<>();
+        private long count;
+
+        Rejections(int max) {
+            this.max = max;
+        }
+
+        void add(long line, String isbn, String error) {
+            count++;
+            if (rows.size() < max) {
+                rows.add(BookImportRowDTO.builder().line(line).isbn(isbn).error(error).build());
+            }
+        }
+    }
+}
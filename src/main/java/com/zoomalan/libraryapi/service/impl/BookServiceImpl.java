@@ -1,20 +1,33 @@
 package com.zoomalan.libraryapi.service.impl;
 
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.config.CacheConfig;
+import com.zoomalan.libraryapi.config.ReadReplica;
 import com.zoomalan.libraryapi.exceptions.BusinessException;
 import com.zoomalan.libraryapi.model.entity.Book;
 import com.zoomalan.libraryapi.model.repository.BookRepository;
 import com.zoomalan.libraryapi.service.BookService;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Locale;
 import java.util.Optional;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+    private static final String ISBN_UNIQUE_KEY = "uk_book_isbn";
+
     private final BookRepository repository;
 
     public BookServiceImpl(BookRepository repository) {
@@ -22,19 +35,40 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ISBN, key = "#book.isbn", condition = "#book.isbn != null")
     public Book save(Book book) {
         if (repository.existsByIsbn(book.getIsbn())) {
             throw new BusinessException("Isbn already registered");
         }
-        return repository.save(book);
+        try {
+            return repository.save(book);
+        } catch (DataIntegrityViolationException e) {
+            if (isbnTaken(e)) {
+                throw new BusinessException("Isbn already registered");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the violated constraint is the isbn's unique key, rather than a missing value or a foreign key.
+     */
+    static boolean isbnTaken(DataIntegrityViolationException e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(ISBN_UNIQUE_KEY);
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.BOOKS_BY_ID, unless = "#result == null")
     public Optional<Book> getById(Long id) {
         return repository.findById(id);
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ID, key = "#id", condition = "#id != null"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ISBN, allEntries = true)
+    })
     public void deleteById(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("Book id cannot be null");
@@ -42,7 +76,18 @@ public class BookServiceImpl implements BookService {
         repository.deleteById(id);
     }
 
+    /**
+     * Evicts the book before saving, so a failed save leaves no stale entry, and again after, so an entry a
+     * concurrent read cached from the old row while the save ran does not outlive it.
+     */
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ID, key = "#book.id", beforeInvocation = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ISBN, key = "#book.isbn", condition = "#book.isbn != null",
+                    beforeInvocation = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ID, key = "#book.id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS_BY_ISBN, key = "#book.isbn", condition = "#book.isbn != null")
+    })
     public Book update(Book book) {
         if (book == null || book.getId() == null) {
             throw new IllegalArgumentException("Book id cannot be null");
@@ -51,17 +96,22 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(filter,
-                ExampleMatcher
-                        .matching()
-                        .withIgnoreCase()
-                        .withIgnoreNullValues()
-                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
-        return repository.findAll(example, pageRequest);
+    @ReadReplica
+    @Transactional(readOnly = true)
+    public Page<BookDTO> findAsDTO(BookDTO filter, Pageable pageRequest) {
+        return repository.findDTOs(filter.getTitle(), filter.getAuthor(), filter.getIsbn(), pageRequest);
+    }
+
+    @Override
+    @ReadReplica
+    @Transactional(readOnly = true)
+    public Slice<Book> findAfter(Book filter, Long afterId, int size) {
+        return repository.findAfter(afterId, filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+                PageRequest.of(0, size, Sort.by("id")));
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.BOOKS_BY_ISBN, condition = "#isbn != null", unless = "#result == null")
     public Optional<Book> getBookByIsbn(String isbn) {
         return repository.findByIsbn(isbn);
     }
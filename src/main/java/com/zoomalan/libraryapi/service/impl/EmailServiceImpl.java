@@ -1,13 +1,16 @@
 package com.zoomalan.libraryapi.service.impl;
 
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+import com.zoomalan.libraryapi.model.repository.OutboxMessageRepository;
 import com.zoomalan.libraryapi.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -16,18 +19,20 @@ public class EmailServiceImpl implements EmailService {
     @Value("${application.mail.default-sender}")
     private String sender;
 
-    private final JavaMailSender javaMailSender;
+    private final OutboxMessageRepository outboxRepository;
 
     @Override
+    @Transactional
     public void sendMails(String message, List<String> mailsList) {
-        String[] mails = mailsList.toArray(new String[mailsList.size()]);
-
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
-        mailMessage.setFrom(sender);
-        mailMessage.setSubject("Overdue loan book");
-        mailMessage.setText(message);
-        mailMessage.setTo(mails);
-
-        javaMailSender.send(mailMessage);
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.enqueue(mailsList.stream()
+                .map(mail -> OutboxMessage.builder()
+                        .sender(sender)
+                        .recipient(mail)
+                        .subject("Overdue loan book")
+                        .body(message)
+                        .createdAt(now)
+                        .build())
+                .collect(Collectors.toList()));
     }
 }
@@ -0,0 +1,128 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.config.ReadReplica;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import com.zoomalan.libraryapi.service.DataFormat;
+import com.zoomalan.libraryapi.service.ExportService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    private static final String BOOKS_CSV_HEADER = "id,title,author,isbn";
+    private static final String LOANS_CSV_HEADER = "id,customer,email,isbn";
+
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public ExportServiceImpl(BookRepository bookRepository,
+                             LoanRepository loanRepository,
+                             EntityManager entityManager,
+                             ObjectMapper objectMapper) {
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @ReadReplica
+    @Transactional(readOnly = true)
+    public void exportBooks(OutputStream out, DataFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == DataFormat.CSV) {
+            writeLine(writer, BOOKS_CSV_HEADER);
+        }
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                Book book = iterator.next();
+                BookDTO dto = toDTO(book);
+                entityManager.detach(book);
+                if (format == DataFormat.CSV) {
+                    writeLine(writer, csv(dto.getId(), dto.getTitle(), dto.getAuthor(), dto.getIsbn()));
+                } else {
+                    writeLine(writer, objectMapper.writeValueAsString(dto));
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    @Override
+    @ReadReplica
+    @Transactional(readOnly = true)
+    public void exportLoans(OutputStream out, DataFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == DataFormat.CSV) {
+            writeLine(writer, LOANS_CSV_HEADER);
+        }
+        try (Stream<Loan> loans = loanRepository.streamAll()) {
+            Iterator<Loan> iterator = loans.iterator();
+            while (iterator.hasNext()) {
+                Loan loan = iterator.next();
+                BookDTO book = toDTO(loan.getBook());
+                LoanDTO dto = LoanDTO.builder()
+                        .id(loan.getId())
+                        .isbn(book.getIsbn())
+                        .customer(loan.getCustomer())
+                        .email(loan.getCustomerEmail())
+                        .book(book)
+                        .build();
+                entityManager.detach(loan);
+                entityManager.detach(loan.getBook());
+                if (format == DataFormat.CSV) {
+                    writeLine(writer, csv(dto.getId(), dto.getCustomer(), dto.getEmail(), dto.getIsbn()));
+                } else {
+                    writeLine(writer, objectMapper.writeValueAsString(dto));
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private static BookDTO toDTO(Book book) {
+        return BookDTO.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(book.getIsbn())
+                .build();
+    }
+
+    private static void writeLine(Writer writer, String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    private static String csv(Object... values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String value = values[i] == null ? "" : values[i].toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.toString();
+    }
+}
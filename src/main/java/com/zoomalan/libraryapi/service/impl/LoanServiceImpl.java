@@ -1,26 +1,66 @@
 package com.zoomalan.libraryapi.service.impl;
 
+import com.zoomalan.libraryapi.api.dto.BatchCheckoutResultDTO;
+import com.zoomalan.libraryapi.api.dto.BulkReturnResultDTO;
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
 import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import com.zoomalan.libraryapi.config.ReadReplica;
 import com.zoomalan.libraryapi.exceptions.BusinessException;
 import com.zoomalan.libraryapi.model.entity.Book;
 import com.zoomalan.libraryapi.model.entity.Loan;
 import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import com.zoomalan.libraryapi.model.repository.LoanSearchQuery;
+import com.zoomalan.libraryapi.service.CheckoutMode;
 import com.zoomalan.libraryapi.service.LoanService;
+import com.zoomalan.libraryapi.service.LoanStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 public class LoanServiceImpl implements LoanService {
 
+    static final String UNINDEXED_SEARCH = "Search loans by isbn, customer, email or loan date";
+    private static final int BATCH_CHECKOUT_ATTEMPTS = 3;
+
     private final LoanRepository repository;
+    private final LoanStatsService statsService;
+    private final TransactionTemplate transactionTemplate;
+    private final int returnChunkSize;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    public LoanServiceImpl(LoanRepository repository,
+                           LoanStatsService statsService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${application.loans.return-chunk-size:500}") int returnChunkSize) {
+        if (returnChunkSize <= 0) {
+            throw new IllegalArgumentException("Return chunk size must be positive, was " + returnChunkSize);
+        }
         this.repository = repository;
+        this.statsService = statsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.returnChunkSize = returnChunkSize;
     }
 
     @Override
@@ -28,7 +68,87 @@ public class LoanServiceImpl implements LoanService {
         if (repository.existsByBookAndNotReturned(loan.getBook())) {
             throw new BusinessException("Book already loaned");
         }
-        return repository.save(loan);
+        try {
+            Loan saved = repository.save(loan);
+            statsService.loanCreated(saved.getBook().getId(), saved.getLoanDate(), !Boolean.TRUE.equals(saved.getReturned()));
+            return saved;
+        } catch (DataIntegrityViolationException e) {
+            throw new BusinessException("Book already loaned");
+        }
+    }
+
+    @Override
+    public Optional<Long> checkout(String isbn, String customer, String customerEmail) {
+        try {
+            return repository.checkout(isbn, customer, customerEmail, LocalDate.now())
+                    .map(loan -> {
+                        statsService.loanCreated(loan.getBook().getId(), loan.getLoanDate(), true);
+                        return loan.getId();
+                    });
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException("Book already loaned");
+        }
+    }
+
+    @Override
+    public BatchCheckoutResultDTO checkoutAll(List<String> isbns, String customer, String customerEmail,
+                                              CheckoutMode mode) {
+        if (isbns == null || isbns.isEmpty()) {
+            throw new BusinessException("No isbn to check out");
+        }
+        List<String> distinctIsbns = new ArrayList<>(new LinkedHashSet<>(isbns));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    BatchCheckoutResultDTO result = checkoutAvailable(distinctIsbns, customer, customerEmail, mode);
+                    if (result.getLoanIds().isEmpty()) {
+                        status.setRollbackOnly();
+                    }
+                    return result;
+                });
+            } catch (DuplicateKeyException e) {
+                // another checkout took one of the books after the availability check; check again
+                if (attempt == BATCH_CHECKOUT_ATTEMPTS) {
+                    throw new BusinessException("Book already loaned");
+                }
+            }
+        }
+    }
+
+    private BatchCheckoutResultDTO checkoutAvailable(List<String> isbns, String customer, String customerEmail,
+                                                     CheckoutMode mode) {
+        BatchCheckoutResultDTO result = new BatchCheckoutResultDTO();
+        Map<String, Long> openLoans = repository.findOpenLoanIdsByIsbn(isbns);
+        List<String> available = new ArrayList<>();
+        for (String isbn : isbns) {
+            if (!openLoans.containsKey(isbn)) {
+                result.getUnknownIsbns().add(isbn);
+            } else if (openLoans.get(isbn) != null) {
+                result.getLoanedIsbns().add(isbn);
+            } else {
+                available.add(isbn);
+            }
+        }
+        if (available.isEmpty() || (mode == CheckoutMode.ALL_OR_NOTHING && available.size() < isbns.size())) {
+            return result;
+        }
+
+        LocalDate loanDate = LocalDate.now();
+        Map<String, Loan> loans = repository.checkoutAll(available, customer, customerEmail, loanDate);
+        for (String isbn : available) {
+            if (!loans.containsKey(isbn)) {
+                // deleted since the availability check
+                result.getUnknownIsbns().add(isbn);
+            }
+        }
+        if (mode == CheckoutMode.ALL_OR_NOTHING && loans.size() < available.size()) {
+            return result;
+        }
+        loans.forEach((isbn, loan) -> {
+            result.getLoanIds().put(isbn, loan.getId());
+            statsService.loanCreated(loan.getBook().getId(), loanDate, true);
+        });
+        return result;
     }
 
     @Override
@@ -36,25 +156,129 @@ public class LoanServiceImpl implements LoanService {
         return repository.findById(id);
     }
 
+    /**
+     * Changes only the returned flag, with a conditional update like {@code returnAll}, so the statistics move
+     * exactly once however many requests change the same loan.
+     */
     @Override
+    @Transactional
     public Loan update(Loan loan) {
-        return repository.save(loan);
+        boolean returned = Boolean.TRUE.equals(loan.getReturned());
+        try {
+            if (repository.setReturned(loan.getId(), returned) > 0) {
+                statsService.loanReturned(loan.getBook().getId(), returned);
+            }
+        } catch (DataIntegrityViolationException e) {
+            throw new BusinessException("Book already loaned");
+        }
+        loan.setReturned(returned);
+        return loan;
     }
 
     @Override
-    public Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable) {
-        return repository.findByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable);
+    public BulkReturnResultDTO returnAll(List<Long> ids, List<String> isbns) {
+        BulkReturnResultDTO result = new BulkReturnResultDTO();
+        Set<Long> loanIds = new LinkedHashSet<>();
+        if (ids != null) {
+            loanIds.addAll(ids);
+        }
+
+        List<String> distinctIsbns = isbns == null ? Collections.emptyList() : new ArrayList<>(new LinkedHashSet<>(isbns));
+        for (List<String> chunk : chunks(distinctIsbns)) {
+            Map<String, Long> openLoans;
+            try {
+                openLoans = repository.findOpenLoanIdsByIsbn(chunk);
+            } catch (RuntimeException e) {
+                log.warn("Could not look up the open loans of {} isbns: {}", chunk.size(), e.getMessage());
+                result.getFailedIsbns().addAll(chunk);
+                continue;
+            }
+            for (String isbn : chunk) {
+                if (!openLoans.containsKey(isbn)) {
+                    result.getUnknownIsbns().add(isbn);
+                } else if (openLoans.get(isbn) == null) {
+                    result.getNotLoanedIsbns().add(isbn);
+                } else {
+                    loanIds.add(openLoans.get(isbn));
+                }
+            }
+        }
+
+        for (List<Long> chunk : chunks(new ArrayList<>(loanIds))) {
+            try {
+                BulkReturnResultDTO returned = transactionTemplate.execute(status -> returnChunk(chunk));
+                result.getReturnedIds().addAll(returned.getReturnedIds());
+                result.getUnknownIds().addAll(returned.getUnknownIds());
+                result.getAlreadyReturnedIds().addAll(returned.getAlreadyReturnedIds());
+            } catch (RuntimeException e) {
+                // rolled back on its own, so the chunks before and after it still count
+                log.warn("Could not return {} loans: {}", chunk.size(), e.getMessage());
+                result.getFailedIds().addAll(chunk);
+            }
+        }
+        return result;
+    }
+
+    private BulkReturnResultDTO returnChunk(List<Long> chunk) {
+        BulkReturnResultDTO result = new BulkReturnResultDTO();
+        Map<Long, Loan> found = repository.lockForReturn(chunk).stream()
+                .collect(Collectors.toMap(Loan::getId, Function.identity()));
+        List<Long> open = new ArrayList<>();
+        for (Long id : chunk) {
+            Loan loan = found.get(id);
+            if (loan == null) {
+                result.getUnknownIds().add(id);
+            } else if (Boolean.TRUE.equals(loan.getReturned())) {
+                result.getAlreadyReturnedIds().add(id);
+            } else {
+                open.add(id);
+            }
+        }
+        if (!open.isEmpty()) {
+            repository.markReturned(open);
+            open.forEach(id -> statsService.loanReturned(found.get(id).getBook().getId(), true));
+        }
+        result.getReturnedIds().addAll(open);
+        return result;
+    }
+
+    private <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += returnChunkSize) {
+            chunks.add(items.subList(from, Math.min(from + returnChunkSize, items.size())));
+        }
+        return chunks;
+    }
+
+    @Override
+    @ReadReplica
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> findAsDTO(LoanFilterDTO filterDTO, Pageable pageable) {
+        if (!LoanSearchQuery.isIndexed(filterDTO)) {
+            throw new BusinessException(UNINDEXED_SEARCH);
+        }
+        return repository.searchDTOs(filterDTO, pageable);
+    }
+
+    @Override
+    @ReadReplica
+    @Transactional(readOnly = true)
+    public Slice<Loan> findAfter(LoanFilterDTO filterDTO, Long afterId, int size) {
+        if (!LoanSearchQuery.isIndexed(filterDTO)) {
+            throw new BusinessException(UNINDEXED_SEARCH);
+        }
+        return repository.searchAfter(filterDTO, afterId, size);
     }
 
     @Override
-    public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
-        return repository.findByBook(book, pageable);
+    @ReadReplica
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> getLoansByBookAsDTO(Long bookId, Pageable pageable) {
+        return repository.findDTOsByBookId(bookId, pageable);
     }
 
     @Override
-    public List<Loan> getAllLateLoans() {
-        final int loanDays = 4;
-        LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
-        return repository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+    public List<Loan> getLateLoansAfter(LocalDate dueDate, Long afterId, int size) {
+        return repository.findLateLoansAfter(dueDate, afterId, PageRequest.of(0, size, Sort.by("id")));
     }
 }
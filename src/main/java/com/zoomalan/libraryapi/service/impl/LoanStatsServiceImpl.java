@@ -0,0 +1,344 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.zoomalan.libraryapi.api.dto.BookLoanStatsDTO;
+import com.zoomalan.libraryapi.api.dto.LoanStatsDTO;
+import com.zoomalan.libraryapi.service.LoanStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Loan counters kept in memory and moved by committed loan changes, so reads never touch the loan table.
+ * Each flush adds the changes gathered since the last one to {@code loan_stats_book} and {@code loan_stats_day}
+ * as deltas, then reloads the counters from those tables, so every instance sees the others' changes one flush
+ * later and none of them drifts.
+ * <p>
+ * A loan change holds the read side of {@link #lock} from before its transaction commits until the counters are
+ * moved; flushes, {@link #load} and {@link #rebuild} take the write side. A rebuild therefore either recounts a
+ * change before it commits, and the change then moves the rebuilt counters, or after the counters moved, but never
+ * in between, where it would be counted twice.
+ */
+@Service
+@Slf4j
+public class LoanStatsServiceImpl implements LoanStatsService {
+
+    private static final String ADD_BOOK = " update loan_stats_book set total_loans = total_loans + ?, " +
+            " open_loans = open_loans + ? where book_id = ? ";
+    private static final String INSERT_BOOK = " insert into loan_stats_book (total_loans, open_loans, book_id) values (?, ?, ?) ";
+    private static final String ADD_DAY = " update loan_stats_day set checkouts = checkouts + ? where day = ? ";
+    private static final String INSERT_DAY = " insert into loan_stats_day (checkouts, day) values (?, ?) ";
+    private static final String REBUILD_BOOKS = " insert into loan_stats_book (book_id, total_loans, open_loans) " +
+            " select id_book, count(*), sum(case when returned then 0 else 1 end) from loan group by id_book ";
+    private static final String REBUILD_DAYS = " insert into loan_stats_day (day, checkouts) " +
+            " select loan_date, count(*) from loan where loan_date is not null group by loan_date ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int topSize;
+    private final int days;
+
+    private final ConcurrentMap<Long, BookCounters> books = new ConcurrentHashMap<>();
+    private final ConcurrentMap<LocalDate, Counter> checkouts = new ConcurrentHashMap<>();
+    private final AtomicLong totalLoans = new AtomicLong();
+    private final AtomicLong openLoans = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Ranking ranking = new Ranking(Collections.emptyList(), new TreeMap<>(), LocalDateTime.now());
+
+    public LoanStatsServiceImpl(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${application.stats.top-size:10}") int topSize,
+                                @Value("${application.stats.days:30}") int days) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topSize = topSize;
+        this.days = days;
+    }
+
+    /**
+     * Reloads the counters from the tables, first persisting the changes not flushed yet.
+     */
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            persistPending();
+            reload();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets every counter to its stored value plus the part of it still pending, which a failed flush left for the
+     * next one to retry. Called under the write lock.
+     */
+    private void reload() {
+        books.values().removeIf(counters -> counters.total.pending.get() == 0 && counters.open.pending.get() == 0);
+        checkouts.values().removeIf(counter -> counter.pending.get() == 0);
+        books.values().forEach(counters -> {
+            counters.total.value.set(counters.total.pending.get());
+            counters.open.value.set(counters.open.pending.get());
+        });
+        checkouts.values().forEach(counter -> counter.value.set(counter.pending.get()));
+        for (Map<String, Object> row : jdbcTemplate.queryForList(" select book_id, total_loans, open_loans from loan_stats_book ")) {
+            BookCounters counters = books.computeIfAbsent(((Number) row.get("BOOK_ID")).longValue(), id -> new BookCounters());
+            counters.total.value.addAndGet(((Number) row.get("TOTAL_LOANS")).longValue());
+            counters.open.value.addAndGet(((Number) row.get("OPEN_LOANS")).longValue());
+        }
+        jdbcTemplate.query(" select day, checkouts from loan_stats_day ", rs -> {
+            checkouts.computeIfAbsent(rs.getDate("day").toLocalDate(), day -> new Counter()).value
+                    .addAndGet(rs.getLong("checkouts"));
+        });
+        totalLoans.set(books.values().stream().mapToLong(counters -> counters.total.value.get()).sum());
+        openLoans.set(books.values().stream().mapToLong(counters -> counters.open.value.get()).sum());
+        rank();
+    }
+
+    @Override
+    public void loanCreated(Long bookId, LocalDate loanDate, boolean open) {
+        afterCommit(() -> {
+            BookCounters counters = books.computeIfAbsent(bookId, id -> new BookCounters());
+            counters.total.add(1);
+            totalLoans.incrementAndGet();
+            if (open) {
+                counters.open.add(1);
+                openLoans.incrementAndGet();
+            }
+            if (loanDate != null) {
+                checkouts.computeIfAbsent(loanDate, day -> new Counter()).add(1);
+            }
+        });
+    }
+
+    @Override
+    public void loanReturned(Long bookId, boolean returned) {
+        long delta = returned ? -1 : 1;
+        afterCommit(() -> {
+            books.computeIfAbsent(bookId, id -> new BookCounters()).open.add(delta);
+            openLoans.addAndGet(delta);
+        });
+    }
+
+    @Override
+    public LoanStatsDTO getStats() {
+        Ranking current = ranking;
+        return new LoanStatsDTO(totalLoans.get(), openLoans.get(), current.mostBorrowed, current.checkoutsPerDay,
+                current.rankedAt);
+    }
+
+    @Override
+    public BookLoanStatsDTO getBookStats(Long bookId) {
+        BookCounters counters = books.get(bookId);
+        return counters == null ? new BookLoanStatsDTO(bookId, 0, 0) : counters.toDTO(bookId);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${application.stats.flush-millis:10000}",
+            initialDelayString = "${application.stats.flush-millis:10000}")
+    @PreDestroy
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            persistPending();
+            reload();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void persistPending() {
+        List<Object[]> bookDeltas = new ArrayList<>();
+        books.forEach((bookId, counters) -> {
+            long total = counters.total.pending.getAndSet(0);
+            long open = counters.open.pending.getAndSet(0);
+            if (total != 0 || open != 0) {
+                bookDeltas.add(new Object[]{total, open, bookId});
+            }
+        });
+        List<Object[]> dayDeltas = new ArrayList<>();
+        checkouts.forEach((day, counter) -> {
+            long count = counter.pending.getAndSet(0);
+            if (count != 0) {
+                dayDeltas.add(new Object[]{count, Date.valueOf(day)});
+            }
+        });
+
+        if (!bookDeltas.isEmpty() || !dayDeltas.isEmpty()) {
+            try {
+                transactionTemplate.execute(status -> {
+                    bookDeltas.forEach(delta -> add(ADD_BOOK, INSERT_BOOK, delta));
+                    dayDeltas.forEach(delta -> add(ADD_DAY, INSERT_DAY, delta));
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                // handed back, so the next flush retries them
+                bookDeltas.forEach(delta -> {
+                    BookCounters counters = books.get((Long) delta[2]);
+                    counters.total.pending.addAndGet((Long) delta[0]);
+                    counters.open.pending.addAndGet((Long) delta[1]);
+                });
+                dayDeltas.forEach(delta -> checkouts.get(((Date) delta[1]).toLocalDate()).pending.addAndGet((Long) delta[0]));
+                log.warn("Could not persist loan statistics, will retry: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Recounts the tables from the loans and reloads the counters from them, dropping the pending changes the
+     * recount already includes.
+     */
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.update(" delete from loan_stats_book ");
+                jdbcTemplate.update(" delete from loan_stats_day ");
+                jdbcTemplate.update(REBUILD_BOOKS);
+                return jdbcTemplate.update(REBUILD_DAYS);
+            });
+            books.values().forEach(counters -> {
+                counters.total.pending.set(0);
+                counters.open.pending.set(0);
+            });
+            checkouts.values().forEach(counter -> counter.pending.set(0));
+            reload();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Rebuilt loan statistics: {} loans, {} open", totalLoans.get(), openLoans.get());
+    }
+
+    /**
+     * Adds a delta to an existing row, or creates the row; a row created meanwhile by another
+     * instance makes the insert fail and the update is tried again.
+     */
+    private void add(String update, String insert, Object[] delta) {
+        if (jdbcTemplate.update(update, delta) == 0) {
+            try {
+                jdbcTemplate.update(insert, delta);
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(update, delta);
+            }
+        }
+    }
+
+    private void rank() {
+        List<BookLoanStatsDTO> mostBorrowed = books.entrySet().stream()
+                .map(entry -> entry.getValue().toDTO(entry.getKey()))
+                .sorted(Comparator.comparingLong(BookLoanStatsDTO::getTotalLoans).reversed()
+                        .thenComparing(BookLoanStatsDTO::getBookId))
+                .limit(topSize)
+                .collect(Collectors.toList());
+        LocalDate since = LocalDate.now().minusDays(days - 1);
+        SortedMap<LocalDate, Long> perDay = new TreeMap<>();
+        checkouts.forEach((day, counter) -> {
+            if (!day.isBefore(since)) {
+                perDay.put(day, counter.value.get());
+            }
+        });
+        ranking = new Ranking(mostBorrowed, Collections.unmodifiableSortedMap(perDay), LocalDateTime.now());
+    }
+
+    /**
+     * Runs the update once the current transaction commits, holding the read lock from just before the commit, or
+     * at once outside a transaction.
+     */
+    private void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.readLock().lock();
+            try {
+                update.run();
+            } finally {
+                lock.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                lock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) {
+                    locked = false;
+                    lock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Current value, plus the part of it not yet added to the summary tables.
+     */
+    private static class Counter {
+
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicLong pending = new AtomicLong();
+
+        void add(long delta) {
+            value.addAndGet(delta);
+            pending.addAndGet(delta);
+        }
+    }
+
+    private static class BookCounters {
+
+        private final Counter total = new Counter();
+        private final Counter open = new Counter();
+
+        BookLoanStatsDTO toDTO(Long bookId) {
+            return new BookLoanStatsDTO(bookId, total.value.get(), open.value.get());
+        }
+    }
+
+    private static class Ranking {
+
+        private final List<BookLoanStatsDTO> mostBorrowed;
+        private final SortedMap<LocalDate, Long> checkoutsPerDay;
+        private final LocalDateTime rankedAt;
+
+        Ranking(List<BookLoanStatsDTO> mostBorrowed, SortedMap<LocalDate, Long> checkoutsPerDay, LocalDateTime rankedAt) {
+            this.mostBorrowed = mostBorrowed;
+            this.checkoutsPerDay = checkoutsPerDay;
+            this.rankedAt = rankedAt;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.zoomalan.libraryapi.config.VirtualThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends mail from a bounded in-memory queue. Each worker drains up to {@code batch-size} messages
+ * and hands them to the sender in one call, so they share a single SMTP connection. Messages the
+ * server rejects are retried one by one with exponential backoff, and every send goes through a
+ * shared messages-per-second cap.
+ */
+@Component
+@Slf4j
+public class MailDispatcher {
+
+    private final JavaMailSender mailSender;
+    private final BlockingQueue<Envelope> queue;
+    private final ExecutorService workers;
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long enqueueTimeoutMillis;
+    private final Timer sendTimer;
+    private final Counter sent;
+    private final Counter retries;
+    private final Counter failures;
+    private volatile boolean running = true;
+
+    public MailDispatcher(JavaMailSender mailSender,
+                          MeterRegistry registry,
+                          @Value("${application.mail.dispatch.queue-capacity:10000}") int queueCapacity,
+                          @Value("${application.mail.dispatch.workers:2}") int workers,
+                          @Value("${application.mail.dispatch.batch-size:50}") int batchSize,
+                          @Value("${application.mail.dispatch.max-attempts:3}") int maxAttempts,
+                          @Value("${application.mail.dispatch.backoff-millis:500}") long backoffMillis,
+                          @Value("${application.mail.dispatch.rate-per-second:0}") double ratePerSecond,
+                          @Value("${application.mail.dispatch.enqueue-timeout-millis:30000}") long enqueueTimeoutMillis,
+                          @Value("${application.threads.virtual:false}") boolean virtualThreads) {
+        this.mailSender = mailSender;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.rateLimiter = new RateLimiter(ratePerSecond);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+
+        Gauge.builder("mail.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting to be sent")
+                .register(registry);
+        this.sendTimer = Timer.builder("mail.send")
+                .description("Time to hand a batch of messages to the mail server")
+                .register(registry);
+        this.sent = Counter.builder("mail.sent").register(registry);
+        this.retries = Counter.builder("mail.retries").register(registry);
+        this.failures = Counter.builder("mail.failures")
+                .description("Messages dropped after exhausting their attempts")
+                .register(registry);
+
+        // SMTPTransport sends inside synchronized methods, so each busy worker still pins its carrier thread
+        this.workers = Executors.newFixedThreadPool(workers, virtualThreads
+                ? VirtualThreads.factory("mail-dispatch-")
+                : new CustomizableThreadFactory("mail-dispatch-"));
+        for (int i = 0; i < workers; i++) {
+            this.workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Queues the message, waiting for room when the queue is full.
+     *
+     * @return a future completed once the message is accepted by the mail server, or completed
+     * exceptionally when it could not be queued or every attempt failed
+     */
+    public CompletableFuture<Void> submit(SimpleMailMessage message) {
+        Envelope envelope = new Envelope(message);
+        try {
+            if (!running || !queue.offer(envelope, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                envelope.future.completeExceptionally(new RejectedExecutionException("Mail queue is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            envelope.future.completeExceptionally(e);
+        }
+        return envelope.future;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+        Envelope envelope;
+        while ((envelope = queue.poll()) != null) {
+            envelope.future.completeExceptionally(new RejectedExecutionException("Mail dispatcher shut down"));
+        }
+    }
+
+    private void work() {
+        List<Envelope> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Envelope first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(envelope -> envelope.future.completeExceptionally(e));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Envelope> batch) throws InterruptedException {
+        rateLimiter.acquire(batch.size());
+        SimpleMailMessage[] messages = batch.stream().map(envelope -> envelope.message).toArray(SimpleMailMessage[]::new);
+        // empty when the whole batch failed without per-message detail
+        Map<Object, Exception> rejected = null;
+        Timer.Sample sample = Timer.start();
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            rejected = e.getFailedMessages();
+        } catch (MailException e) {
+            log.warn("Mail batch of {} failed: {}", batch.size(), e.getMessage());
+            rejected = Collections.emptyMap();
+        } finally {
+            sample.stop(sendTimer);
+        }
+
+        for (Envelope envelope : batch) {
+            if (rejected == null || !(rejected.isEmpty() || rejected.containsKey(envelope.message))) {
+                delivered(envelope);
+            } else {
+                retry(envelope);
+            }
+        }
+    }
+
+    private void retry(Envelope envelope) throws InterruptedException {
+        MailException last = null;
+        for (int attempt = 2; attempt <= maxAttempts; attempt++) {
+            retries.increment();
+            TimeUnit.MILLISECONDS.sleep(backoffMillis << (attempt - 2));
+            rateLimiter.acquire(1);
+            Timer.Sample sample = Timer.start();
+            try {
+                mailSender.send(envelope.message);
+                delivered(envelope);
+                return;
+            } catch (MailException e) {
+                last = e;
+            } finally {
+                sample.stop(sendTimer);
+            }
+        }
+        failures.increment();
+        log.warn("Giving up on mail to {}: {}", String.join(",", envelope.message.getTo()),
+                last != null ? last.getMessage() : "rejected");
+        envelope.future.completeExceptionally(last != null ? last : new MailSendException("Message rejected"));
+    }
+
+    private void delivered(Envelope envelope) {
+        sent.increment();
+        envelope.future.complete(null);
+    }
+
+    private static class Envelope {
+
+        private final SimpleMailMessage message;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Envelope(SimpleMailMessage message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * Hands out send slots evenly spaced at the configured rate. A rate of zero or less disables the cap.
+     */
+    static class RateLimiter {
+
+        private final long nanosPerPermit;
+        // lock-free, so a virtual thread reserving a slot never pins its carrier
+        private final AtomicLong nextFree = new AtomicLong(System.nanoTime());
+
+        RateLimiter(double permitsPerSecond) {
+            this.nanosPerPermit = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        }
+
+        void acquire(int permits) throws InterruptedException {
+            long wait = reserve(permits);
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        private long reserve(int permits) {
+            if (nanosPerPermit == 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            long start = nextFree.getAndAccumulate(permits * nanosPerPermit,
+                    (free, cost) -> Math.max(now, free) + cost);
+            return Math.max(now, start) - now;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+import com.zoomalan.libraryapi.model.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Drains the outbox in leased batches and hands the messages to the {@link MailDispatcher}.
+ * A lease that is not settled before it expires, because the instance died mid-batch, makes its
+ * rows claimable again, so delivery is at-least-once across restarts.
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+
+    private final OutboxMessageRepository repository;
+    private final MailDispatcher mailDispatcher;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long leaseSeconds;
+    private final long retrySeconds;
+    private final Counter sent;
+    private final Counter released;
+    private final Counter abandoned;
+
+    public OutboxDispatcher(OutboxMessageRepository repository,
+                            MailDispatcher mailDispatcher,
+                            MeterRegistry registry,
+                            @Value("${application.mail.outbox.batch-size:100}") int batchSize,
+                            @Value("${application.mail.outbox.max-attempts:5}") int maxAttempts,
+                            @Value("${application.mail.outbox.lease-seconds:300}") long leaseSeconds,
+                            @Value("${application.mail.outbox.retry-seconds:60}") long retrySeconds) {
+        this.repository = repository;
+        this.mailDispatcher = mailDispatcher;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.leaseSeconds = leaseSeconds;
+        this.retrySeconds = retrySeconds;
+        this.sent = Counter.builder("outbox.sent").register(registry);
+        this.released = Counter.builder("outbox.released")
+                .description("Messages given back to the outbox for a later attempt")
+                .register(registry);
+        this.abandoned = Counter.builder("outbox.abandoned")
+                .description("Messages left unsent after their last attempt")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${application.mail.outbox.poll-millis:1000}",
+            initialDelayString = "${application.mail.outbox.poll-millis:1000}")
+    public void dispatch() {
+        int dispatched;
+        do {
+            dispatched = dispatchBatch();
+        } while (dispatched == batchSize);
+    }
+
+    /**
+     * Claims one batch, sends it and settles every row.
+     *
+     * @return how many messages were claimed
+     */
+    int dispatchBatch() {
+        String claimedBy = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        if (repository.claim(claimedBy, now, now.plusSeconds(leaseSeconds), maxAttempts, batchSize) == 0) {
+            return 0;
+        }
+        List<OutboxMessage> batch = repository.findByClaimedByOrderById(claimedBy);
+
+        Map<OutboxMessage, CompletableFuture<Void>> sends = new LinkedHashMap<>();
+        batch.forEach(message -> sends.put(message, mailDispatcher.submit(toMail(message))));
+
+        List<Long> sentIds = new ArrayList<>();
+        sends.forEach((message, send) -> {
+            try {
+                send.join();
+                sentIds.add(message.getId());
+            } catch (CompletionException e) {
+                release(message, e.getCause());
+            }
+        });
+        if (!sentIds.isEmpty()) {
+            repository.markSent(sentIds, LocalDateTime.now());
+            sent.increment(sentIds.size());
+        }
+        return batch.size();
+    }
+
+    private void release(OutboxMessage message, Throwable cause) {
+        int attempt = message.getAttempts() + 1;
+        String error = String.valueOf(cause.getMessage());
+        if (error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+        repository.release(message.getId(), error, LocalDateTime.now().plusSeconds(retrySeconds << (attempt - 1)));
+        if (attempt >= maxAttempts) {
+            abandoned.increment();
+            log.warn("Giving up on outbox message {} to {} after {} attempts: {}",
+                    message.getId(), message.getRecipient(), attempt, error);
+        } else {
+            released.increment();
+        }
+    }
+
+    private static SimpleMailMessage toMail(OutboxMessage message) {
+        SimpleMailMessage mail = new SimpleMailMessage();
+        mail.setFrom(message.getSender());
+        mail.setTo(message.getRecipient());
+        mail.setSubject(message.getSubject());
+        mail.setText(message.getBody());
+        return mail;
+    }
+}
@@ -0,0 +1,91 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.zoomalan.libraryapi.service.SchedulerLockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+/**
+ * Lease lock on the {@code scheduler_lock} table. Lease times are computed by the database clock,
+ * so nodes with skewed clocks still agree on when a lease has expired.
+ */
+@Service
+@Slf4j
+public class SchedulerLockServiceImpl implements SchedulerLockService {
+
+    private static final String TAKE_EXPIRED = " update scheduler_lock set locked_by = ?, locked_at = localtimestamp, " +
+            " locked_until = dateadd('MILLISECOND', ?, localtimestamp), token = token + 1 " +
+            " where name = ? and locked_until <= localtimestamp ";
+    private static final String INSERT_LOCK = " insert into scheduler_lock (name, locked_by, locked_at, locked_until, token) " +
+            " values (?, ?, localtimestamp, dateadd('MILLISECOND', ?, localtimestamp), 1) ";
+    private static final String SELECT_TOKEN = " select token from scheduler_lock where name = ? ";
+    private static final String EXTEND = " update scheduler_lock set locked_until = dateadd('MILLISECOND', ?, localtimestamp) " +
+            " where name = ? and token = ? ";
+    private static final String RELEASE = " update scheduler_lock set locked_until = localtimestamp " +
+            " where name = ? and token = ? ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry registry;
+    private final String nodeId;
+
+    public SchedulerLockServiceImpl(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry registry,
+                                    @Value("${application.scheduler.node-id:}") String nodeId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.registry = registry;
+        this.nodeId = nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    @Override
+    public boolean runLocked(String name, Duration lease, LongConsumer task) {
+        Timer.Sample acquiring = Timer.start(registry);
+        OptionalLong token = tryLock(name, lease);
+        acquiring.stop(registry.timer("scheduler.lock.acquire",
+                "lock", name, "outcome", token.isPresent() ? "acquired" : "busy"));
+        if (!token.isPresent()) {
+            log.info("Lock {} is held by another node, skipping", name);
+            return false;
+        }
+
+        Timer.Sample holding = Timer.start(registry);
+        try {
+            task.accept(token.getAsLong());
+        } finally {
+            jdbcTemplate.update(RELEASE, name, token.getAsLong());
+            holding.stop(registry.timer("scheduler.lock.held", "lock", name));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean extend(String name, long token, Duration lease) {
+        return jdbcTemplate.update(EXTEND, lease.toMillis(), name, token) == 1;
+    }
+
+    private OptionalLong tryLock(String name, Duration lease) {
+        return transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(TAKE_EXPIRED, nodeId, lease.toMillis(), name) == 0) {
+                try {
+                    jdbcTemplate.update(INSERT_LOCK, name, nodeId, lease.toMillis());
+                } catch (DuplicateKeyException e) {
+                    return OptionalLong.empty();
+                }
+            }
+            return OptionalLong.of(jdbcTemplate.queryForObject(SELECT_TOKEN, Long.class, name));
+        });
+    }
+}
@@ -0,0 +1,23 @@
+create table book (
+    id     bigint auto_increment primary key,
+    title  varchar(255),
+    author varchar(255),
+    isbn   varchar(255) not null,
+    constraint uk_book_isbn unique (isbn)
+);
+
+create table loan (
+    id             bigint auto_increment primary key,
+    customer       varchar(100),
+    customer_email varchar(255),
+    id_book        bigint       not null,
+    loan_date      date,
+    returned       boolean,
+    constraint fk_loan_book foreign key (id_book) references book (id)
+);
+
+-- open-loan check: existsByBookAndNotReturned
+create index idx_loan_book_returned on loan (id_book, returned);
+
+-- overdue scan: findByLoanDateLessThanAndNotReturned
+create index idx_loan_date_returned on loan (loan_date, returned);
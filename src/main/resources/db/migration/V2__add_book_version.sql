@@ -0,0 +1,2 @@
+-- optimistic locking and ETags for books
+alter table book add column version bigint default 0 not null;
@@ -0,0 +1,5 @@
+-- at most one open loan per book, enforced by the database: the computed column is
+-- null once the loan is returned and unique indexes ignore nulls
+alter table loan add column open_book_id bigint as (case when returned then null else id_book end);
+
+create unique index uk_loan_open_book on loan (open_book_id);
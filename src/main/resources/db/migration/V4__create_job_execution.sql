@@ -0,0 +1,12 @@
+-- progress of batch jobs, so an interrupted run resumes after its last completed chunk
+create table job_execution (
+    id           bigint auto_increment primary key,
+    job_name     varchar(100) not null,
+    due_date     date         not null,
+    last_loan_id bigint,
+    processed    bigint       not null,
+    started_at   timestamp    not null,
+    finished_at  timestamp
+);
+
+create index idx_job_execution_unfinished on job_execution (job_name, finished_at);
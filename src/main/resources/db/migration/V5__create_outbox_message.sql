@@ -0,0 +1,19 @@
+-- mail intents written in the same transaction as the state they describe, drained by OutboxDispatcher
+create table outbox_message (
+    id            bigint auto_increment primary key,
+    sender        varchar(255),
+    recipient     varchar(255)  not null,
+    subject       varchar(255),
+    body          varchar(4000),
+    created_at    timestamp     not null,
+    attempts      int           not null,
+    claimed_by    varchar(36),
+    claimed_until timestamp,
+    sent_at       timestamp,
+    last_error    varchar(1000)
+);
+
+-- claim scan: unsent rows whose lease is free, in id order
+create index idx_outbox_pending on outbox_message (sent_at, claimed_until, id);
+
+create index idx_outbox_claimed_by on outbox_message (claimed_by);
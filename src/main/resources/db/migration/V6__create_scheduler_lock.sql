@@ -0,0 +1,8 @@
+-- one row per scheduled job; token grows on every takeover and fences writes from a node that lost its lease
+create table scheduler_lock (
+    name         varchar(100) primary key,
+    locked_by    varchar(255) not null,
+    locked_at    timestamp    not null,
+    locked_until timestamp    not null,
+    token        bigint       not null
+);
@@ -0,0 +1,11 @@
+-- running totals maintained by LoanStatsService; rebuilt from loan on demand, so no foreign key to book
+create table loan_stats_book (
+    book_id     bigint primary key,
+    total_loans bigint not null,
+    open_loans  bigint not null
+);
+
+create table loan_stats_day (
+    day       date primary key,
+    checkouts bigint not null
+);
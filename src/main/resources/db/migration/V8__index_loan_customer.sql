@@ -0,0 +1,4 @@
+-- loan search: each customer or email filter is its own union branch, driven by one of these
+create index idx_loan_customer on loan (customer);
+
+create index idx_loan_customer_email on loan (customer_email);
@@ -0,0 +1,7 @@
+-- written on the primary every heartbeat; how far behind a replica's copy is gives its replication lag
+create table replica_heartbeat (
+    id      int       primary key,
+    beat_at timestamp not null
+);
+
+insert into replica_heartbeat (id, beat_at) values (1, current_timestamp);
@@ -0,0 +1,283 @@
+package com.zoomalan.libraryapi.api.controller;
+
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.dto.ReturnedLoanDTO;
+import com.zoomalan.libraryapi.config.CacheConfig;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import com.zoomalan.libraryapi.service.LoanStatsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles({"test", "reactive"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ReactiveApiTest {
+
+    static final String BOOK_API = "/api/books";
+    static final String LOAN_API = "/api/loans";
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    LoanStatsService statsService;
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        // the repositories delete behind the book caches' back
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @DisplayName("Should create a book in the database shared with the JPA side")
+    public void createBookTest() {
+        // execution
+        BookDTO created = client.post().uri(BOOK_API)
+                .bodyValue(BookDTO.builder().title("My book").author("Author").isbn("123").build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BookDTO.class).returnResult().getResponseBody();
+
+        // verification
+        assertThat(created.getId()).isNotNull();
+        assertThat(bookRepository.findById(created.getId())).get()
+                .extracting(Book::getIsbn).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Should reject a duplicated isbn and an invalid book with the servlet error body")
+    public void createInvalidBookTest() {
+        // scenario
+        bookRepository.save(createNewBook("123"));
+
+        // execution / verification
+        client.post().uri(BOOK_API)
+                .bodyValue(BookDTO.builder().title("My book").author("Author").isbn("123").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Isbn already registered");
+
+        client.post().uri(BOOK_API)
+                .bodyValue(new BookDTO())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors.length()").isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should answer a book with its ETag, then 304, then 412 for a stale If-Match")
+    public void conditionalRequestsTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        String eTag = "\"" + book.getVersion() + "\"";
+
+        // execution / verification
+        client.get().uri(BOOK_API + "/" + book.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody().jsonPath("isbn").isEqualTo("123");
+
+        client.get().uri(BOOK_API + "/" + book.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        BookDTO update = BookDTO.builder().title("New title").author("New author").isbn("123").build();
+        client.put().uri(BOOK_API + "/" + book.getId())
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("title").isEqualTo("New title");
+
+        client.put().uri(BOOK_API + "/" + book.getId())
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        client.get().uri(BOOK_API + "/0").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Should cache a book read through the API and evict it when updated")
+    public void bookCacheTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        Cache booksById = cacheManager.getCache(CacheConfig.BOOKS_BY_ID);
+
+        // execution / verification
+        client.get().uri(BOOK_API + "/" + book.getId()).exchange().expectStatus().isOk();
+        assertThat(booksById.get(book.getId(), Book.class)).extracting(Book::getTitle).isEqualTo("Spring Boot");
+
+        client.put().uri(BOOK_API + "/" + book.getId())
+                .bodyValue(BookDTO.builder().title("New title").author("New author").isbn("123").build())
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(booksById.get(book.getId())).isNull();
+
+        client.get().uri(BOOK_API + "/" + book.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("title").isEqualTo("New title");
+    }
+
+    @Test
+    @DisplayName("Should count a loan returned twice only once")
+    public void returnTwiceTest() {
+        // scenario
+        bookRepository.save(createNewBook("123"));
+        long openLoans = statsService.getStats().getOpenLoans();
+        Long loanId = client.post().uri(LOAN_API)
+                .bodyValue(LoanDTO.builder().isbn("123").customer("Alan").email("alan@email.com").build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Long.class).returnResult().getResponseBody();
+
+        // execution
+        for (int i = 0; i < 2; i++) {
+            client.patch().uri(LOAN_API + "/" + loanId).bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                    .exchange()
+                    .expectStatus().isOk();
+        }
+
+        // verification
+        assertThat(statsService.getStats().getOpenLoans()).isEqualTo(openLoans);
+    }
+
+    @Test
+    @DisplayName("Should check out a book once, return it and list its loans")
+    public void loanLifecycleTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        LoanDTO loan = LoanDTO.builder().isbn("123").customer("Alan").email("alan@email.com").build();
+
+        // execution
+        Long loanId = client.post().uri(LOAN_API).bodyValue(loan)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Long.class).returnResult().getResponseBody();
+
+        // verification
+        client.post().uri(LOAN_API).bodyValue(loan)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Book already loaned");
+
+        client.post().uri(LOAN_API).bodyValue(LoanDTO.builder().isbn("456").customer("Alan").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Book not found for passed isbn");
+
+        client.patch().uri(LOAN_API + "/" + loanId).bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(loanRepository.findById(loanId)).get().extracting("returned").isEqualTo(true);
+
+        client.patch().uri(LOAN_API + "/0").bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                .exchange()
+                .expectStatus().isNotFound();
+
+        client.get().uri(BOOK_API + "/" + book.getId() + "/loans?page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("totalElements").isEqualTo(1)
+                .jsonPath("content[0].book.isbn").isEqualTo("123");
+
+        client.get().uri(LOAN_API + "?customer=Alan&page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("content[0].id").isEqualTo(loanId.intValue());
+
+        client.get().uri(LOAN_API + "?returned=true&page=0&size=10")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Search loans by isbn, customer, email or loan date");
+    }
+
+    @Test
+    @DisplayName("Should filter and page books like the servlet endpoint")
+    public void findBooksTest() {
+        // scenario
+        for (int i = 0; i < 3; i++) {
+            bookRepository.save(Book.builder().title("Java " + i).author("Author").isbn("isbn-" + i).build());
+        }
+        bookRepository.save(Book.builder().title("Spring").author("Author").isbn("isbn-3").build());
+
+        // execution / verification
+        client.get().uri(BOOK_API + "?title=JAVA&page=0&size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(2)
+                .jsonPath("totalElements").isEqualTo(3)
+                .jsonPath("content[0].title").isEqualTo("Java 0");
+    }
+
+    @Test
+    @DisplayName("Should sort books and loans by a listed property and reject any other")
+    public void sortTest() {
+        // scenario
+        Book java = bookRepository.save(Book.builder().title("Java").author("B").isbn("123").build());
+        bookRepository.save(Book.builder().title("Spring").author("A").isbn("456").build());
+        client.post().uri(LOAN_API).bodyValue(LoanDTO.builder().isbn("123").customer("Bob").email("bob@email.com").build())
+                .exchange().expectStatus().isCreated();
+        client.post().uri(LOAN_API).bodyValue(LoanDTO.builder().isbn("456").customer("Alan").email("alan@email.com").build())
+                .exchange().expectStatus().isCreated();
+
+        // execution / verification
+        client.get().uri(BOOK_API + "?page=0&size=10&sort=author,asc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content[0].title").isEqualTo("Spring")
+                .jsonPath("content[1].id").isEqualTo(java.getId().intValue());
+
+        client.get().uri(BOOK_API + "?page=0&size=10&sort=version")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Cannot sort books by version");
+
+        client.get().uri(LOAN_API + "?isbn=123&customer=Alan&page=0&size=10&sort=customer")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content[0].customer").isEqualTo("Alan")
+                .jsonPath("content[1].customer").isEqualTo("Bob");
+
+        client.get().uri(LOAN_API + "?customer=Alan&page=0&size=10&sort=book.title")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Cannot sort loans by book.title");
+    }
+}
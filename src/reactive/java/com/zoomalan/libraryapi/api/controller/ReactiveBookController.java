@@ -0,0 +1,96 @@
+package com.zoomalan.libraryapi.api.controller;
+
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.mapper.BookMapper;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.service.ReactiveBookService;
+import com.zoomalan.libraryapi.service.ReactiveLoanService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * Non-blocking counterpart of {@link BookController}, served instead of it by the {@code reactive} profile.
+ */
+@RestController
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveBookController {
+
+    private final ReactiveBookService service;
+    private final ReactiveLoanService loanService;
+    private final BookMapper bookMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto) {
+        log.info("Creating a book for isbn: {}", dto.getIsbn());
+        return service.save(bookMapper.toEntity(dto)).map(bookMapper::toDTO);
+    }
+
+    /**
+     * Answers 304 when If-None-Match holds the current ETag; WebFlux checks it for GET responses.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<BookDTO>> get(@PathVariable Long id) {
+        log.info("Getting a book by id: {}", id);
+        return existing(id).map(book -> ResponseEntity.ok().eTag(BookController.eTag(book)).body(bookMapper.toDTO(book)));
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable Long id) {
+        log.info("Deleting a book by id: {}", id);
+        return existing(id).flatMap(book -> service.deleteById(id));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<BookDTO>> update(@PathVariable Long id,
+                                                @RequestBody @Valid BookDTO dto,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Updating a book by id: {}", id);
+        return existing(id)
+                .flatMap(book -> {
+                    if (ifMatch != null && !BookController.matches(ifMatch, BookController.eTag(book))) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                                "Book was modified by another request"));
+                    }
+                    // as in BookController, the book read may be the cached instance, so the edit goes on a copy
+                    return service.update(Book.builder()
+                            .id(book.getId())
+                            .isbn(book.getIsbn())
+                            .version(book.getVersion())
+                            .title(dto.getTitle())
+                            .author(dto.getAuthor())
+                            .build());
+                })
+                .map(book -> ResponseEntity.ok().eTag(BookController.eTag(book)).body(bookMapper.toDTO(book)));
+    }
+
+    @GetMapping
+    public Mono<Page<BookDTO>> find(BookDTO dto, Pageable pageRequest) {
+        return service.find(dto, pageRequest);
+    }
+
+    @GetMapping("/{id}/loans")
+    public Mono<Page<LoanDTO>> loansByBook(@PathVariable Long id, Pageable pageable) {
+        return existing(id).flatMap(book -> loanService.getLoansByBook(book.getId(), pageable));
+    }
+
+    private Mono<Book> existing(Long id) {
+        return service.getById(id).switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+}
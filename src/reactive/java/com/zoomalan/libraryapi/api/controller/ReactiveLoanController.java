@@ -0,0 +1,44 @@
+package com.zoomalan.libraryapi.api.controller;
+
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import com.zoomalan.libraryapi.api.dto.ReturnedLoanDTO;
+import com.zoomalan.libraryapi.service.ReactiveLoanService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link LoanController}, served instead of it by the {@code reactive} profile.
+ */
+@RestController
+@RequestMapping("/api/loans")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveLoanController {
+
+    private final ReactiveLoanService service;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Long> create(@RequestBody LoanDTO dto) {
+        return service.checkout(dto.getIsbn(), dto.getCustomer(), dto.getEmail())
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn")));
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<Void> returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
+        return service.setReturned(id, dto.getReturned())
+                .flatMap(found -> found ? Mono.<Void>empty() : Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+
+    @GetMapping
+    public Mono<Page<LoanDTO>> find(LoanFilterDTO dto, Pageable pageRequest) {
+        return service.find(dto, pageRequest);
+    }
+}
@@ -0,0 +1,25 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBookService {
+
+    Mono<Book> save(Book book);
+
+    Mono<Book> getById(Long id);
+
+    Mono<Book> getBookByIsbn(String isbn);
+
+    Mono<Void> deleteById(Long id);
+
+    /**
+     * Updates title and author only if the book is still at {@code book.getVersion()}.
+     */
+    Mono<Book> update(Book book);
+
+    Mono<Page<BookDTO>> find(BookDTO filter, Pageable pageable);
+}
@@ -0,0 +1,28 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveLoanService {
+
+    /**
+     * @return the new loan id, or empty when no book has the isbn
+     */
+    Mono<Long> checkout(String isbn, String customer, String customerEmail);
+
+    /**
+     * @return whether a loan with the id exists
+     */
+    Mono<Boolean> setReturned(Long id, Boolean returned);
+
+    /**
+     * Fails with a {@link com.zoomalan.libraryapi.exceptions.BusinessException} when the filter has no isbn,
+     * customer, email or loan date bound, as {@link LoanService#findAsDTO} does.
+     */
+    Mono<Page<LoanDTO>> find(LoanFilterDTO filter, Pageable pageable);
+
+    Mono<Page<LoanDTO>> getLoansByBook(Long bookId, Pageable pageable);
+}
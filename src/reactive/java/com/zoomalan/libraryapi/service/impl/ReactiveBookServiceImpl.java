@@ -0,0 +1,188 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.config.CacheConfig;
+import com.zoomalan.libraryapi.exceptions.BusinessException;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.service.ReactiveBookService;
+import io.r2dbc.spi.Row;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.bind;
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.limit;
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.orderBy;
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.page;
+
+/**
+ * Reads and evicts the same book caches as {@link BookServiceImpl}. R2DBC bypasses Hibernate, so the
+ * {@code reactive} profile runs without the second-level cache and these are its only book cache.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBookServiceImpl implements ReactiveBookService {
+
+    private static final Map<String, String> SORTABLE;
+
+    static {
+        Map<String, String> sortable = new HashMap<>();
+        sortable.put("id", "id");
+        sortable.put("title", "title");
+        sortable.put("author", "author");
+        sortable.put("isbn", "isbn");
+        SORTABLE = Collections.unmodifiableMap(sortable);
+    }
+
+    private static final String SELECT_BOOK = " select id, title, author, isbn, version from book ";
+    private static final String UPDATE_BOOK = " update book set title = :title, author = :author, version = version + 1 " +
+            " where id = :id and version = :version ";
+
+    private final DatabaseClient client;
+    private final Cache booksById;
+    private final Cache booksByIsbn;
+
+    public ReactiveBookServiceImpl(DatabaseClient client, CacheManager cacheManager) {
+        this.client = client;
+        this.booksById = cacheManager.getCache(CacheConfig.BOOKS_BY_ID);
+        this.booksByIsbn = cacheManager.getCache(CacheConfig.BOOKS_BY_ISBN);
+    }
+
+    @Override
+    public Mono<Book> save(Book book) {
+        if (book.getIsbn() != null) {
+            booksByIsbn.evict(book.getIsbn());
+        }
+        return client.insert().into("book")
+                .value("title", book.getTitle())
+                .value("author", book.getAuthor())
+                .value("isbn", book.getIsbn())
+                .value("version", 0L)
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> Book.builder().id(id).title(book.getTitle()).author(book.getAuthor())
+                        .isbn(book.getIsbn()).version(0L).build())
+                .onErrorMap(e -> e instanceof DataIntegrityViolationException
+                                && BookServiceImpl.isbnTaken((DataIntegrityViolationException) e),
+                        e -> new BusinessException("Isbn already registered"));
+    }
+
+    @Override
+    public Mono<Book> getById(Long id) {
+        return cached(booksById, id, client.execute(SELECT_BOOK + " where id = :id ").bind("id", id));
+    }
+
+    @Override
+    public Mono<Book> getBookByIsbn(String isbn) {
+        return cached(booksByIsbn, isbn, client.execute(SELECT_BOOK + " where isbn = :isbn ").bind("isbn", isbn));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Long id) {
+        return client.execute(" delete from book where id = :id ").bind("id", id).then()
+                .doOnSuccess(deleted -> {
+                    booksById.evict(id);
+                    booksByIsbn.clear();
+                });
+    }
+
+    /**
+     * Evicts the book before updating, as {@link BookServiceImpl#update} does, and again once the row is read
+     * back, so a read that cached the old row meanwhile does not outlive it.
+     */
+    @Override
+    public Mono<Book> update(Book book) {
+        return Mono.defer(() -> {
+            evict(book);
+            return client.execute(UPDATE_BOOK)
+                    .bind("title", book.getTitle())
+                    .bind("author", book.getAuthor())
+                    .bind("id", book.getId())
+                    .bind("version", book.getVersion())
+                    .fetch()
+                    .rowsUpdated()
+                    .flatMap(updated -> updated == 0
+                            ? Mono.error(new ObjectOptimisticLockingFailureException(Book.class, book.getId()))
+                            : select(client.execute(SELECT_BOOK + " where id = :id ").bind("id", book.getId())))
+                    .doOnNext(this::evict);
+        });
+    }
+
+    @Override
+    public Mono<Page<BookDTO>> find(BookDTO filter, Pageable pageable) {
+        return Mono.defer(() -> find(filter, pageable, orderBy(pageable.getSort(), SORTABLE, "", "books")));
+    }
+
+    private Mono<Page<BookDTO>> find(BookDTO filter, Pageable pageable, String orderBy) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder where = new StringBuilder(" where 1 = 1 ");
+        contains(where, params, "title", filter.getTitle());
+        contains(where, params, "author", filter.getAuthor());
+        contains(where, params, "isbn", filter.getIsbn());
+
+        return page(
+                bind(client.execute(SELECT_BOOK + where + orderBy + limit(pageable)), params)
+                        .map(row -> new BookDTO(row.get("id", Long.class), row.get("title", String.class),
+                                row.get("author", String.class), row.get("isbn", String.class)))
+                        .all()
+                        .collectList(),
+                bind(client.execute(" select count(*) from book " + where), params)
+                        .map(row -> row.get(0, Long.class))
+                        .one(),
+                pageable);
+    }
+
+    /**
+     * Same case-insensitive contains match as {@code BookRepository.findDTOs}, leaving out unset fields.
+     */
+    private static void contains(StringBuilder where, Map<String, Object> params, String column, String value) {
+        if (value != null) {
+            where.append(" and lower(").append(column).append(") like :").append(column);
+            params.put(column, "%" + value.toLowerCase() + "%");
+        }
+    }
+
+    /**
+     * The cached book, or the one the query finds, which is then cached. A missing book is not cached, as with
+     * {@code @Cacheable(unless = "#result == null")}.
+     */
+    private static Mono<Book> cached(Cache cache, Object key, DatabaseClient.GenericExecuteSpec query) {
+        return Mono.defer(() -> {
+            Book book = cache.get(key, Book.class);
+            return book != null ? Mono.just(book) : select(query).doOnNext(found -> cache.put(key, found));
+        });
+    }
+
+    private static Mono<Book> select(DatabaseClient.GenericExecuteSpec query) {
+        return query.map(ReactiveBookServiceImpl::toBook).one();
+    }
+
+    private void evict(Book book) {
+        booksById.evict(book.getId());
+        if (book.getIsbn() != null) {
+            booksByIsbn.evict(book.getIsbn());
+        }
+    }
+
+    private static Book toBook(Row row) {
+        return Book.builder()
+                .id(row.get("id", Long.class))
+                .title(row.get("title", String.class))
+                .author(row.get("author", String.class))
+                .isbn(row.get("isbn", String.class))
+                .version(row.get("version", Long.class))
+                .build();
+    }
+}
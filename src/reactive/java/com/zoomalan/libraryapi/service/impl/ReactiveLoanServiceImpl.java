@@ -0,0 +1,126 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import com.zoomalan.libraryapi.exceptions.BusinessException;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.repository.LoanSearchQuery;
+import com.zoomalan.libraryapi.service.LoanStatsService;
+import com.zoomalan.libraryapi.service.ReactiveBookService;
+import com.zoomalan.libraryapi.service.ReactiveLoanService;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.bind;
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.limit;
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.orderBy;
+import static com.zoomalan.libraryapi.service.impl.ReactiveQueries.page;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveLoanServiceImpl implements ReactiveLoanService {
+
+    private static final String SELECT_LOAN = " select l.id, l.customer, l.customer_email, " +
+            " b.id as book_id, b.title, b.author, b.isbn from loan l join book b on b.id = l.id_book ";
+    private static final String COUNT_LOAN = " select count(*) from loan l join book b on b.id = l.id_book ";
+    private static final String BY_BOOK = " where l.id_book = :bookId ";
+
+    private final DatabaseClient client;
+    private final ReactiveBookService bookService;
+    private final LoanStatsService statsService;
+
+    /**
+     * The open-loan unique index settles concurrent checkouts of one book, as it does for
+     * {@code LoanServiceImpl.checkout}.
+     */
+    @Override
+    public Mono<Long> checkout(String isbn, String customer, String customerEmail) {
+        LocalDate loanDate = LocalDate.now();
+        return bookService.getBookByIsbn(isbn)
+                .map(Book::getId)
+                .flatMap(bookId -> client.insert().into("loan")
+                        .value("customer", customer)
+                        .value("customer_email", customerEmail)
+                        .value("id_book", bookId)
+                        .value("loan_date", loanDate)
+                        .value("returned", false)
+                        .map(row -> row.get("id", Long.class))
+                        .one()
+                        .doOnNext(id -> statsService.loanCreated(bookId, loanDate, true)))
+                .onErrorMap(DataIntegrityViolationException.class, e -> new BusinessException("Book already loaned"));
+    }
+
+    /**
+     * Updates the flag only when it changes, as {@code LoanRepositoryImpl.setReturned} does, so of two concurrent
+     * returns of a loan only the one that changed the row counts it in the statistics.
+     */
+    @Override
+    public Mono<Boolean> setReturned(Long id, Boolean returned) {
+        boolean value = Boolean.TRUE.equals(returned);
+        return client.execute(" update loan set returned = :returned where id = :id and coalesce(returned, false) <> :returned ")
+                .bind("returned", value)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> client.execute(" select id_book from loan where id = :id ")
+                        .bind("id", id)
+                        .map(row -> row.get("id_book", Long.class))
+                        .one()
+                        .doOnNext(bookId -> {
+                            if (updated > 0) {
+                                statsService.loanReturned(bookId, value);
+                            }
+                        }))
+                .map(bookId -> true)
+                .defaultIfEmpty(false)
+                .onErrorMap(DataIntegrityViolationException.class, e -> new BusinessException("Book already loaned"));
+    }
+
+    @Override
+    public Mono<Page<LoanDTO>> find(LoanFilterDTO filter, Pageable pageable) {
+        if (!LoanSearchQuery.isIndexed(filter)) {
+            return Mono.error(new BusinessException(LoanServiceImpl.UNINDEXED_SEARCH));
+        }
+        LoanSearchQuery search = new LoanSearchQuery(filter);
+        return find(" where l.id in (" + search.ids() + ") ", search.parameters(), pageable);
+    }
+
+    @Override
+    public Mono<Page<LoanDTO>> getLoansByBook(Long bookId, Pageable pageable) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("bookId", bookId);
+        return find(BY_BOOK, params, pageable);
+    }
+
+    private Mono<Page<LoanDTO>> find(String where, Map<String, Object> params, Pageable pageable) {
+        return Mono.defer(() -> page(
+                bind(client.execute(SELECT_LOAN + where
+                        + orderBy(pageable.getSort(), LoanSearchQuery.SORTABLE, "l.", "loans")
+                        + limit(pageable)), params)
+                        .map(ReactiveLoanServiceImpl::toDTO)
+                        .all()
+                        .collectList(),
+                bind(client.execute(COUNT_LOAN + where), params)
+                        .map(row -> row.get(0, Long.class))
+                        .one(),
+                pageable));
+    }
+
+    private static LoanDTO toDTO(Row row) {
+        return new LoanDTO(row.get("id", Long.class), row.get("customer", String.class),
+                row.get("customer_email", String.class), row.get("book_id", Long.class),
+                row.get("title", String.class), row.get("author", String.class), row.get("isbn", String.class));
+    }
+}
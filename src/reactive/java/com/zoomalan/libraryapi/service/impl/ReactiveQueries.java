@@ -0,0 +1,60 @@
+package com.zoomalan.libraryapi.service.impl;
+
+import com.zoomalan.libraryapi.exceptions.BusinessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+final class ReactiveQueries {
+
+    private ReactiveQueries() {
+    }
+
+    /**
+     * Binds every parameter, typing nulls as strings, which is all the filters use.
+     */
+    static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, Map<String, Object> params) {
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = param.getValue() == null
+                    ? spec.bindNull(param.getKey(), String.class)
+                    : spec.bind(param.getKey(), param.getValue());
+        }
+        return spec;
+    }
+
+    /**
+     * Orders by the requested properties, each mapped to its column through {@code sortable} and qualified
+     * with {@code prefix} (such as {@code "l."}), then by id so pages never overlap.
+     *
+     * @throws BusinessException when sorting by a property {@code sortable} does not list
+     */
+    static String orderBy(Sort sort, Map<String, String> sortable, String prefix, String entities) {
+        List<String> order = new ArrayList<>();
+        for (Sort.Order by : sort) {
+            String column = sortable.get(by.getProperty());
+            if (column == null) {
+                throw new BusinessException("Cannot sort " + entities + " by " + by.getProperty());
+            }
+            order.add(prefix + column + (by.isAscending() ? " asc" : " desc"));
+        }
+        if (!order.contains(prefix + "id asc") && !order.contains(prefix + "id desc")) {
+            order.add(prefix + "id asc");
+        }
+        return " order by " + String.join(", ", order) + " ";
+    }
+
+    static String limit(Pageable pageable) {
+        return " limit " + pageable.getPageSize() + " offset " + pageable.getOffset();
+    }
+
+    static <T> Mono<Page<T>> page(Mono<List<T>> content, Mono<Long> total, Pageable pageable) {
+        return Mono.zip(content, total).map(result -> new PageImpl<>(result.getT1(), pageable, result.getT2()));
+    }
+}
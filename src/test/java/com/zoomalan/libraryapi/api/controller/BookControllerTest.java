@@ -2,41 +2,66 @@ package com.zoomalan.libraryapi.api.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.api.dto.BookImportResultDTO;
+import com.zoomalan.libraryapi.api.mapper.BookMapperImpl;
+import com.zoomalan.libraryapi.api.mapper.LoanMapperImpl;
+import com.zoomalan.libraryapi.api.pagination.KeysetCursor;
 import com.zoomalan.libraryapi.exceptions.BusinessException;
 import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.service.BookImportService;
 import com.zoomalan.libraryapi.service.BookService;
+import com.zoomalan.libraryapi.service.DataFormat;
+import com.zoomalan.libraryapi.service.ExportService;
 import com.zoomalan.libraryapi.service.LoanService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class BookControllerTest {
 
     static String BOOK_API = "/api/books";
@@ -50,6 +75,12 @@ public class BookControllerTest {
     @MockBean
     LoanService loanService;
 
+    @MockBean
+    BookImportService importService;
+
+    @MockBean
+    ExportService exportService;
+
     @Test
     @DisplayName("Should create a book")
     public void createBookTest() throws Exception {
@@ -124,6 +155,7 @@ public class BookControllerTest {
                 .title(createNewBook().getTitle())
                 .author(createNewBook().getAuthor())
                 .isbn(createNewBook().getIsbn())
+                .version(3L)
                 .build();
 
         BDDMockito.given(service.getById(id)).willReturn(Optional.of(book));
@@ -136,12 +168,32 @@ public class BookControllerTest {
         mvc
                 .perform(request)
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
                 .andExpect(jsonPath("id").value(id))
                 .andExpect(jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
                 .andExpect(jsonPath("isbn").value(createNewBook().getIsbn()));
     }
 
+    @Test
+    @DisplayName("Should return not modified when the book still matches the client's ETag")
+    public void getBookNotModifiedTest() throws Exception {
+        // given
+        Book book = Book.builder().id(1L).title("Title").author("Author").isbn("123").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        // when
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().string(""));
+    }
+
     @Test
     @DisplayName("Should return resource not found when a book looking for does not exist")
     public void bookNotFoundTest() throws Exception {
@@ -201,7 +253,7 @@ public class BookControllerTest {
         BDDMockito.given(service.getById(id)).willReturn(Optional.of(updateBook));
 
         Book updatedBook = Book.builder().id(1L).author("Alan").title("Spring Boot").isbn("Isbn").build();
-        BDDMockito.given(service.update(updateBook)).willReturn(updatedBook);
+        BDDMockito.given(service.update(any(Book.class))).willReturn(updatedBook);
 
         // when
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -216,6 +268,62 @@ public class BookControllerTest {
                 .andExpect(jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
                 .andExpect(jsonPath("isbn").value("Isbn"));
+
+        // the instance read, possibly shared through the cache, is left as it was
+        assertThat(updateBook.getTitle()).isEqualTo("Title");
+        assertThat(updateBook.getAuthor()).isEqualTo("Author");
+        ArgumentCaptor<Book> saved = ArgumentCaptor.forClass(Book.class);
+        Mockito.verify(service).update(saved.capture());
+        assertThat(saved.getValue()).isNotSameAs(updateBook);
+        assertThat(saved.getValue().getTitle()).isEqualTo(createNewBook().getTitle());
+        assertThat(saved.getValue().getIsbn()).isEqualTo("Isbn");
+    }
+
+    @Test
+    @DisplayName("Should reject an update whose If-Match does not match the current version")
+    public void updateBookPreconditionFailedTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+
+        // given
+        Book book = Book.builder().id(1L).title("Title").author("Author").isbn("Isbn").version(4L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        // when
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("errors[0]").value("Book was modified by another request"));
+
+        Mockito.verify(service, Mockito.never()).update(any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Should reject an update that lost the race against a concurrent one")
+    public void updateBookConcurrentlyModifiedTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+
+        // given
+        Book book = Book.builder().id(1L).title("Title").author("Author").isbn("Isbn").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(any(Book.class)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+        // when
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isPreconditionFailed());
     }
 
     @Test
@@ -244,15 +352,15 @@ public class BookControllerTest {
     public void findBookTest() throws Exception {
         // given
         Long id = 1L;
-        Book book = Book.builder()
+        BookDTO book = BookDTO.builder()
                 .id(id)
                 .author(createNewBook().getAuthor())
                 .title(createNewBook().getTitle())
                 .isbn(createNewBook().getIsbn())
                 .build();
 
-        BDDMockito.given(service.find(any(Book.class), any(Pageable.class)))
-                .willReturn(new PageImpl<Book>(Collections.singletonList(book), PageRequest.of(0, 100), 1));
+        BDDMockito.given(service.findAsDTO(any(BookDTO.class), any(Pageable.class)))
+                .willReturn(new PageImpl<BookDTO>(Collections.singletonList(book), PageRequest.of(0, 100), 1));
 
         String queryString = String.format("?title=%s&author=%s&page=0&size=100",
                 book.getTitle(), book.getAuthor());
@@ -269,6 +377,85 @@ public class BookControllerTest {
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Should filter books with a cursor")
+    public void findBookByCursorTest() throws Exception {
+        // given
+        Book book = Book.builder().id(5L).author("Alan").title("Spring Boot").isbn("001").build();
+
+        BDDMockito.given(service.findAfter(any(Book.class), eq(4L), anyInt()))
+                .willReturn(new SliceImpl<Book>(Collections.singletonList(book), PageRequest.of(0, 1), true));
+
+        String queryString = String.format("?title=%s&after=%s&size=1", book.getTitle(), KeysetCursor.encode(4L));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat(queryString))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("size").value(1))
+                .andExpect(jsonPath("next").value(KeysetCursor.encode(5L)));
+    }
+
+    @Test
+    @DisplayName("Should return bad request for an invalid cursor")
+    public void findBookByInvalidCursorTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?after=invalid"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+    }
+
+    @Test
+    @DisplayName("Should import books from a CSV body")
+    public void importBooksTest() throws Exception {
+        // given
+        BookImportResultDTO summary = BookImportResultDTO.builder()
+                .total(1).imported(1).rejectedRows(Collections.emptyList()).build();
+        BDDMockito.given(importService.importBooks(any(Reader.class), eq(DataFormat.CSV)))
+                .willReturn(summary);
+
+        // when
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/import"))
+                .contentType("text/csv")
+                .accept(MediaType.APPLICATION_JSON)
+                .content("title,author,isbn\nSpring Boot,Alan,001\n");
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("total").value(1))
+                .andExpect(jsonPath("imported").value(1))
+                .andExpect(jsonPath("rejectedRows", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("Should stream the book export as CSV")
+    public void exportBooksTest() throws Exception {
+        // given
+        BDDMockito.willAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("id,title,author,isbn\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).given(exportService).exportBooks(any(OutputStream.class), eq(DataFormat.CSV));
+
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=CSV")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(3_600_000);
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id,title,author,isbn\n"));
+    }
+
     private static BookDTO createNewBook() {
         return BookDTO.builder().author("Alan").title("Spring Boot").isbn("001").build();
     }
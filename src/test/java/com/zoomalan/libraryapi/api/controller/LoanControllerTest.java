@@ -1,13 +1,21 @@
 package com.zoomalan.libraryapi.api.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zoomalan.libraryapi.api.dto.BatchCheckoutDTO;
+import com.zoomalan.libraryapi.api.dto.BatchCheckoutResultDTO;
+import com.zoomalan.libraryapi.api.dto.BulkReturnDTO;
+import com.zoomalan.libraryapi.api.dto.BulkReturnResultDTO;
 import com.zoomalan.libraryapi.api.dto.LoanDTO;
 import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
 import com.zoomalan.libraryapi.api.dto.ReturnedLoanDTO;
+import com.zoomalan.libraryapi.api.mapper.BookMapperImpl;
+import com.zoomalan.libraryapi.api.mapper.LoanMapperImpl;
 import com.zoomalan.libraryapi.exceptions.BusinessException;
 import com.zoomalan.libraryapi.model.entity.Book;
 import com.zoomalan.libraryapi.model.entity.Loan;
-import com.zoomalan.libraryapi.service.BookService;
+import com.zoomalan.libraryapi.service.CheckoutMode;
+import com.zoomalan.libraryapi.service.DataFormat;
+import com.zoomalan.libraryapi.service.ExportService;
 import com.zoomalan.libraryapi.service.LoanService;
 import com.zoomalan.libraryapi.service.LoanServiceTest;
 import org.junit.jupiter.api.DisplayName;
@@ -18,22 +26,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
-import java.time.LocalDate;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -41,6 +55,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @WebMvcTest(controllers = LoanController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class})
 public class LoanControllerTest {
 
     private static final String LOAN_API = "/api/loans";
@@ -49,10 +64,10 @@ public class LoanControllerTest {
     MockMvc mvc;
 
     @MockBean
-    private BookService bookService;
+    private LoanService loanService;
 
     @MockBean
-    private LoanService loanService;
+    private ExportService exportService;
 
     @Test
     @DisplayName("Should take out a loan")
@@ -61,11 +76,7 @@ public class LoanControllerTest {
         LoanDTO dto = LoanDTO.builder().isbn("123").email("customer@email.com").customer("Alan").build();
         String json = new ObjectMapper().writeValueAsString(dto);
 
-        Book book = Book.builder().id(1L).isbn("123").build();
-        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.of(book));
-
-        Loan loan = Loan.builder().id(1L).customer("Alan").book(book).loanDate(LocalDate.now()).build();
-        BDDMockito.given(loanService.save(any(Loan.class))).willReturn(loan);
+        BDDMockito.given(loanService.checkout("123", "Alan", "customer@email.com")).willReturn(Optional.of(1L));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API)
                 .accept(MediaType.APPLICATION_JSON)
@@ -85,7 +96,7 @@ public class LoanControllerTest {
         LoanDTO dto = LoanDTO.builder().isbn("123").customer("Alan").build();
         String json = new ObjectMapper().writeValueAsString(dto);
 
-        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.empty());
+        BDDMockito.given(loanService.checkout("123", "Alan", null)).willReturn(Optional.empty());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API)
                 .accept(MediaType.APPLICATION_JSON)
@@ -105,10 +116,7 @@ public class LoanControllerTest {
         LoanDTO dto = LoanDTO.builder().isbn("123").customer("Alan").build();
         String json = new ObjectMapper().writeValueAsString(dto);
 
-        Book book = Book.builder().id(1L).isbn("123").build();
-        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.of(book));
-
-        BDDMockito.given(loanService.save(any(Loan.class))).willThrow(new BusinessException("Book already loaned"));
+        BDDMockito.given(loanService.checkout("123", "Alan", null)).willThrow(new BusinessException("Book already loaned"));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API)
                 .accept(MediaType.APPLICATION_JSON)
@@ -141,6 +149,84 @@ public class LoanControllerTest {
         verify(loanService, times(1)).update(loan);
     }
 
+    @Test
+    @DisplayName("Should lend a stack of books in one request")
+    public void createAllTest() throws Exception {
+        // scenario
+        BatchCheckoutDTO dto = BatchCheckoutDTO.builder().customer("Alan").email("alan@email.com")
+                .isbns(Arrays.asList("123", "456")).build();
+        BatchCheckoutResultDTO result = new BatchCheckoutResultDTO();
+        result.getLoanIds().put("123", 1L);
+        result.getLoanedIsbns().add("456");
+        BDDMockito.given(loanService.checkoutAll(dto.getIsbns(), "Alan", "alan@email.com", CheckoutMode.PARTIAL))
+                .willReturn(result);
+
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        // execution / verification
+        mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API.concat("/batch?mode=PARTIAL"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+        )
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("loanIds.123").value(1))
+                .andExpect(jsonPath("loanedIsbns[0]").value("456"));
+    }
+
+    @Test
+    @DisplayName("Should answer conflict when no book of a stack could be lent")
+    public void createAllConflictTest() throws Exception {
+        // scenario
+        BatchCheckoutDTO dto = BatchCheckoutDTO.builder().customer("Alan").isbns(Arrays.asList("123", "456")).build();
+        BatchCheckoutResultDTO result = new BatchCheckoutResultDTO();
+        result.getLoanedIsbns().add("456");
+        BDDMockito.given(loanService.checkoutAll(dto.getIsbns(), "Alan", null, CheckoutMode.ALL_OR_NOTHING))
+                .willReturn(result);
+
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        // execution / verification
+        mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+        )
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("loanIds").isEmpty())
+                .andExpect(jsonPath("loanedIsbns[0]").value("456"));
+    }
+
+    @Test
+    @DisplayName("Should return a burst of loans in one request")
+    public void returnBooksTest() throws Exception {
+        // scenario
+        BulkReturnDTO dto = BulkReturnDTO.builder().ids(Arrays.asList(1L, 2L)).isbns(Collections.singletonList("123")).build();
+        BulkReturnResultDTO result = BulkReturnResultDTO.builder()
+                .returnedIds(Arrays.asList(1L, 3L))
+                .alreadyReturnedIds(Collections.singletonList(2L))
+                .build();
+        BDDMockito.given(loanService.returnAll(dto.getIds(), dto.getIsbns())).willReturn(result);
+
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        // execution / verification
+        mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API.concat("/returns"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+        )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("returnedIds", hasSize(2)))
+                .andExpect(jsonPath("alreadyReturnedIds[0]").value(2))
+                .andExpect(jsonPath("unknownIds", hasSize(0)));
+
+        verify(loanService, never()).update(any(Loan.class));
+    }
+
     @Test
     @DisplayName("Should return 404 when trying to return a nonexistent book")
     public void returnNonexistentBookTest() throws Exception {
@@ -171,8 +257,11 @@ public class LoanControllerTest {
         Book book = Book.builder().id(1L).isbn("321").build();
         loan.setBook(book);
 
-        BDDMockito.given(loanService.find(any(LoanFilterDTO.class), any(Pageable.class)))
-                .willReturn(new PageImpl<Loan>(Collections.singletonList(loan), PageRequest.of(0, 10), 1));
+        LoanDTO loanDTO = new LoanDTO(id, loan.getCustomer(), loan.getCustomerEmail(),
+                book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn());
+
+        BDDMockito.given(loanService.findAsDTO(any(LoanFilterDTO.class), any(Pageable.class)))
+                .willReturn(new PageImpl<LoanDTO>(Collections.singletonList(loanDTO), PageRequest.of(0, 10), 1));
 
         String queryString = String.format("?isbn=%s&customer=%s&page=0&size=10",
                 book.getIsbn(), loan.getCustomer());
@@ -186,6 +275,44 @@ public class LoanControllerTest {
                 .andExpect(jsonPath("content", hasSize(1)))
                 .andExpect(jsonPath("totalElements").value(1))
                 .andExpect(jsonPath("pageable.pageSize").value(10))
-                .andExpect(jsonPath("pageable.pageNumber").value(0));
+                .andExpect(jsonPath("pageable.pageNumber").value(0))
+                .andExpect(jsonPath("content[0].isbn").value("321"))
+                .andExpect(jsonPath("content[0].book.isbn").value("321"));
+    }
+
+    @Test
+    @DisplayName("Should filter loans with a cursor")
+    public void findLoansByCursorTest() throws Exception {
+        // given
+        Loan loan = LoanServiceTest.createLoan();
+        loan.setId(1L);
+
+        BDDMockito.given(loanService.findAfter(any(LoanFilterDTO.class), isNull(), anyInt()))
+                .willReturn(new SliceImpl<Loan>(Collections.singletonList(loan), PageRequest.of(0, 10), false));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(LOAN_API.concat("?customer=Alan&after=&size=10"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("size").value(1))
+                .andExpect(jsonPath("next").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Should stream the loan export as NDJSON by default")
+    public void exportLoansTest() throws Exception {
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/export")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(3_600_000);
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"));
+
+        verify(exportService).exportLoans(any(OutputStream.class), eq(DataFormat.NDJSON));
     }
 }
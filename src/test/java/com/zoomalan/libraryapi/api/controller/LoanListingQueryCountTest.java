@@ -0,0 +1,151 @@
+package com.zoomalan.libraryapi.api.controller;
+
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+public class LoanListingQueryCountTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    Book book;
+
+    @BeforeEach
+    public void setup() {
+        book = bookRepository.save(createNewBook("123"));
+        Book other = bookRepository.save(createNewBook("456"));
+        for (int i = 0; i < 3; i++) {
+            boolean returned = i < 2;
+            loanRepository.save(Loan.builder().book(book).customer("Alan").loanDate(LocalDate.now())
+                    .returned(returned).build());
+            loanRepository.save(Loan.builder().book(other).customer("Alan").loanDate(LocalDate.now())
+                    .returned(returned).build());
+        }
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        // the hot books, already in the second-level cache
+        bookRepository.findAllById(Arrays.asList(book.getId(), other.getId()));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should list loans with one select and one count")
+    public void findLoansStatementsTest() throws Exception {
+        mvc.perform(get("/api/loans?isbn=123&customer=Alan&page=0&size=4").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(4)))
+                .andExpect(jsonPath("content[0].book.isbn").exists());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should reject sorting loans by an unknown property with a 400")
+    public void findLoansUnknownSortTest() throws Exception {
+        mvc.perform(get("/api/loans?customer=Alan&page=0&size=4&sort=book").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Cannot sort loans by book"));
+    }
+
+    @Test
+    @DisplayName("Should list loans by cursor with a single select")
+    public void findLoansByCursorStatementsTest() throws Exception {
+        mvc.perform(get("/api/loans?customer=Alan&after=&size=4").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(4)));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should list the loans of a book with one select and one count, the book being cached")
+    public void loansByBookStatementsTest() throws Exception {
+        mvc.perform(get("/api/books/" + book.getId() + "/loans?page=0&size=2").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(2)))
+                .andExpect(jsonPath("content[0].book.isbn").value("123"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should list loans with their books in the same select, cached or not")
+    public void findLoansColdCacheStatementsTest() throws Exception {
+        entityManagerFactory.getCache().evict(Book.class);
+
+        mvc.perform(get("/api/loans?customer=Alan&page=0&size=6").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(6)))
+                .andExpect(jsonPath("content[*].book.isbn", hasItems("123", "456")));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should load the uncached books of a page of loans by cursor in one select")
+    public void findLoansByCursorColdCacheStatementsTest() throws Exception {
+        entityManagerFactory.getCache().evict(Book.class);
+
+        mvc.perform(get("/api/loans?customer=Alan&after=&size=6").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(6)));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getSecondLevelCachePutCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,141 @@
+package com.zoomalan.libraryapi.config;
+
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "application.jdbc.slow-statement.threshold-millis=0",
+        "application.jdbc.slow-statement.capacity=4"})
+@AutoConfigureMockMvc
+public class HibernateStatisticsEndpointTest {
+
+    static final String ENDPOINT = "/actuator/hibernate";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    SlowStatementLog slowStatementLog;
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should report per-query executions, rows and entity loads")
+    public void queryStatisticsTest() throws Exception {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        loanRepository.save(Loan.builder().book(book).customer("Alan").loanDate(LocalDate.now()).build());
+        mvc.perform(delete(ENDPOINT)).andExpect(status().isNoContent());
+
+        // execution
+        loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now());
+        loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now());
+
+        // verification
+        mvc.perform(get(ENDPOINT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("enabled").value(true))
+                .andExpect(jsonPath("entityLoads").value(greaterThanOrEqualTo(2)))
+                .andExpect(jsonPath("entities['com.zoomalan.libraryapi.model.entity.Loan'].loads").value(2))
+                .andExpect(jsonPath("queries[?(@.query =~ /.*l.loanDate <= :threeDaysAgo.*/)].executions").value(contains(2)))
+                .andExpect(jsonPath("queries[?(@.query =~ /.*l.loanDate <= :threeDaysAgo.*/)].rows").value(contains(2)));
+    }
+
+    @Test
+    @DisplayName("Should keep slow statements with their bind parameter types only")
+    public void slowStatementsTest() throws Exception {
+        // scenario
+        mvc.perform(delete(ENDPOINT)).andExpect(status().isNoContent());
+
+        // execution
+        for (int i = 0; i < 5; i++) {
+            bookRepository.findById((long) i);
+        }
+        bookRepository.existsByIsbn("secret-isbn");
+
+        // verification
+        assertThat(slowStatementLog.slowest())
+                .hasSize(4)
+                .flatExtracting(SlowStatementLog.SlowStatement::getParameters)
+                .contains("Long", "String")
+                .doesNotContain("secret-isbn");
+        mvc.perform(get(ENDPOINT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("slowStatements.thresholdMillis").value(0))
+                .andExpect(jsonPath("slowStatements.statements", hasSize(4)))
+                .andExpect(jsonPath("slowStatements.statements[*].sql", everyItem(containsString("from book"))));
+    }
+
+    @Test
+    @DisplayName("Should keep the slowest statements rather than the latest ones")
+    public void slowestStatementsTest() {
+        // scenario
+        SlowStatementLog log = new SlowStatementLog(0, 3);
+
+        // execution
+        for (long millis : new long[]{5, 1, 4, 2, 3}) {
+            log.record("select " + millis, Collections.emptyList(), TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        // verification
+        assertThat(log.slowest())
+                .extracting(SlowStatementLog.SlowStatement::getSql)
+                .containsExactly("select 5", "select 4", "select 3");
+    }
+
+    @Test
+    @DisplayName("Should report the hits and misses of the book cache region")
+    public void cacheRegionStatisticsTest() throws Exception {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        mvc.perform(delete(ENDPOINT)).andExpect(status().isNoContent());
+
+        // execution
+        bookRepository.findById(book.getId());
+        bookRepository.findById(book.getId());
+        bookRepository.findById(book.getId() + 1);
+
+        // verification
+        mvc.perform(get(ENDPOINT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("cacheRegions.book.hits").value(1))
+                .andExpect(jsonPath("cacheRegions.book.misses").value(2))
+                .andExpect(jsonPath("cacheRegions.book.puts").value(1));
+    }
+}
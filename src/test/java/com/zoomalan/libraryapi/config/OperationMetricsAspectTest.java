@@ -0,0 +1,92 @@
+package com.zoomalan.libraryapi.config;
+
+import com.zoomalan.libraryapi.exceptions.BusinessException;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class OperationMetricsAspectTest {
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should time service calls by operation and outcome, telling business errors apart")
+    public void serviceTimersTest() {
+        // scenario
+        long successes = calls(OperationMetricsAspect.SERVICE_TIMER, "BookService.save", "SUCCESS");
+        long businessErrors = calls(OperationMetricsAspect.SERVICE_TIMER, "BookService.save", "BUSINESS_ERROR");
+
+        // execution
+        bookService.save(createNewBook("123"));
+        Throwable exception = catchThrowable(() -> bookService.save(createNewBook("123")));
+
+        // verification
+        assertThat(exception).isInstanceOf(BusinessException.class);
+        assertThat(calls(OperationMetricsAspect.SERVICE_TIMER, "BookService.save", "SUCCESS")).isEqualTo(successes + 1);
+        assertThat(calls(OperationMetricsAspect.SERVICE_TIMER, "BookService.save", "BUSINESS_ERROR"))
+                .isEqualTo(businessErrors + 1);
+        Timer businessError = registry.get(OperationMetricsAspect.SERVICE_TIMER)
+                .tags("operation", "BookService.save", "outcome", "BUSINESS_ERROR").timer();
+        assertThat(businessError.getId().getTag("exception")).isEqualTo("BusinessException");
+
+        Timer success = registry.get(OperationMetricsAspect.SERVICE_TIMER)
+                .tags("operation", "BookService.save", "outcome", "SUCCESS").timer();
+        HistogramSnapshot snapshot = success.takeSnapshot();
+        assertThat(snapshot.percentileValues()).extracting(value -> value.percentile()).containsExactly(0.5, 0.99);
+        assertThat(snapshot.histogramCounts()).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("Should time repository queries, including inherited ones, and the connection pool")
+    public void repositoryAndPoolTimersTest() {
+        // scenario
+        long existsCalls = calls(OperationMetricsAspect.REPOSITORY_TIMER, "BookRepository.existsByIsbn", "SUCCESS");
+        long findByIdCalls = calls(OperationMetricsAspect.REPOSITORY_TIMER, "BookRepository.findById", "SUCCESS");
+
+        // execution
+        bookRepository.existsByIsbn("123");
+        bookRepository.findById(1L);
+
+        // verification
+        assertThat(calls(OperationMetricsAspect.REPOSITORY_TIMER, "BookRepository.existsByIsbn", "SUCCESS"))
+                .isEqualTo(existsCalls + 1);
+        assertThat(calls(OperationMetricsAspect.REPOSITORY_TIMER, "BookRepository.findById", "SUCCESS"))
+                .isEqualTo(findByIdCalls + 1);
+        assertThat(registry.get("hikaricp.connections.acquire").timer().count()).isPositive();
+        assertThat(registry.get("hikaricp.connections.usage").timer().takeSnapshot().percentileValues()).hasSize(2);
+    }
+
+    private long calls(String name, String operation, String outcome) {
+        Timer timer = registry.find(name).tags("operation", operation, "outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
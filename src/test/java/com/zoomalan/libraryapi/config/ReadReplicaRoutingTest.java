@@ -0,0 +1,165 @@
+package com.zoomalan.libraryapi.config;
+
+import com.zoomalan.libraryapi.api.dto.BookDTO;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.service.BookService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "application.datasource.replica.urls=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "application.datasource.replica.max-lag-millis=5000",
+        "application.datasource.replica.heartbeat-millis=3600000"})
+public class ReadReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    // far above the ids the other tests reach, as the second-level cache is shared
+    static final long REPLICA_BOOK_ID = 1_000_000;
+
+    static final String HEARTBEAT = " select beat_at from replica_heartbeat where id = 1 ";
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    ReplicaLagMonitor monitor;
+
+    @Autowired
+    JdbcTemplate primary;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    JdbcTemplate replica;
+
+    @BeforeEach
+    public void setup() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        // nothing replicates between the two H2 databases, so the test stands in for replication
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        replica = new JdbcTemplate(dataSource);
+        replica.update(" insert into book (id, title, author, isbn) values (?, 'Replica', 'Alan', 'replica') ",
+                REPLICA_BOOK_ID);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        replica.update(" delete from book ");
+        bookRepository.deleteAll();
+        entityManagerFactory.getCache().evict(Book.class);
+    }
+
+    @Test
+    @DisplayName("Should read from an in-sync replica and write to the primary")
+    public void inSyncReplicaTest() {
+        // scenario
+        monitor.check();
+        replica.update(" update replica_heartbeat set beat_at = ? where id = 1 ",
+                primary.queryForObject(HEARTBEAT, Timestamp.class));
+        monitor.check();
+        double reads = routed("replica-1", "read");
+        double writes = routed(ReplicaRoutingDataSource.PRIMARY, "write");
+
+        // execution
+        bookService.save(createNewBook("primary"));
+        Page<BookDTO> books = bookService.findAsDTO(new BookDTO(), PageRequest.of(0, 10));
+
+        // verification
+        assertThat(monitor.inSync()).containsExactly("replica-1");
+        assertThat(books.getContent()).extracting(BookDTO::getIsbn).containsExactly("replica");
+        assertThat(primary.queryForObject(" select count(*) from book where isbn = 'primary' ", Long.class))
+                .isEqualTo(1);
+        assertThat(routed("replica-1", "read")).isGreaterThan(reads);
+        assertThat(routed(ReplicaRoutingDataSource.PRIMARY, "write")).isGreaterThan(writes);
+        assertThat(registry.get(ReplicaLagMonitor.LAG_GAUGE).tag("datasource", "replica-1").gauge().value())
+                .isZero();
+        assertThat(registry.get("hikaricp.connections.acquire").tag("pool", "replica-1").timer().count())
+                .isPositive();
+    }
+
+    @Test
+    @DisplayName("Should read from the primary while the replica lags too far behind")
+    public void laggingReplicaTest() {
+        // scenario
+        replica.update(" update replica_heartbeat set beat_at = ? where id = 1 ",
+                new Timestamp(System.currentTimeMillis() - 60_000));
+        monitor.check();
+        monitor.check();
+        double fallbacks = routed(ReplicaRoutingDataSource.PRIMARY, "fallback");
+        bookService.save(createNewBook("primary"));
+
+        // execution
+        Page<BookDTO> books = bookService.findAsDTO(new BookDTO(), PageRequest.of(0, 10));
+
+        // verification
+        assertThat(monitor.inSync()).isEmpty();
+        assertThat(books.getContent()).extracting(BookDTO::getIsbn).contains("primary").doesNotContain("replica");
+        assertThat(routed(ReplicaRoutingDataSource.PRIMARY, "fallback")).isGreaterThan(fallbacks);
+        assertThat(registry.get(ReplicaLagMonitor.LAG_GAUGE).tag("datasource", "replica-1").gauge().value())
+                .isGreaterThan(monitor.maxLagMillis());
+    }
+
+    @Test
+    @DisplayName("Should not cache replica rows over a write made on the primary")
+    public void replicaReadSkipsCacheTest() {
+        // scenario
+        monitor.check();
+        replica.update(" update replica_heartbeat set beat_at = ? where id = 1 ",
+                primary.queryForObject(HEARTBEAT, Timestamp.class));
+        monitor.check();
+        Book book = bookService.save(createNewBook("written"));
+        replica.update(" insert into book (id, title, author, isbn) values (?, 'Replica', 'Alan', 'written') ",
+                book.getId());
+        book.setTitle("Written");
+        bookService.update(book);
+        entityManagerFactory.getCache().evict(Book.class);
+
+        // execution
+        Slice<Book> stale = bookService.findAfter(new Book(), null, 10);
+        Book first = bookService.getById(book.getId()).get();
+        Book second = bookService.getById(book.getId()).get();
+
+        // verification
+        assertThat(stale.getContent()).extracting(Book::getTitle).contains("Replica");
+        assertThat(first.getTitle()).isEqualTo("Written");
+        assertThat(second.getTitle()).isEqualTo("Written");
+    }
+
+    private double routed(String dataSource, String reason) {
+        Counter counter = registry.find(ReplicaRoutingDataSource.ROUTING_COUNTER)
+                .tags("datasource", dataSource, "reason", reason)
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
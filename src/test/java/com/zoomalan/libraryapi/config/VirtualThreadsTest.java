@@ -0,0 +1,62 @@
+package com.zoomalan.libraryapi.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadsTest {
+
+    @Test
+    @DisplayName("Should run each task on its own named virtual thread")
+    public void perTaskExecutorTest() throws Exception {
+        assumeTrue(VirtualThreads.isAvailable(), "runtime has no virtual threads");
+
+        // execution
+        ExecutorService executor = VirtualThreads.perTaskExecutor("test-");
+        Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // verification
+        assertThat(VirtualThreads.isVirtual(thread)).isTrue();
+        assertThat(thread.getName()).startsWith("test-");
+    }
+
+    @Test
+    @DisplayName("Should fail fast when the runtime has no virtual threads")
+    public void unavailableTest() {
+        assumeFalse(VirtualThreads.isAvailable(), "runtime has virtual threads");
+
+        assertThatThrownBy(() -> VirtualThreads.factory("test-"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("JDK 21");
+        assertThat(VirtualThreads.isVirtual(Thread.currentThread())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should require a carrier thread left over when every pooled connection pins one")
+    public void requireFreeCarrierTest() {
+        String parallelism = System.setProperty("jdk.virtualThreadScheduler.parallelism", "8");
+        try {
+            // execution
+            VirtualThreads.requireFreeCarrier(7);
+
+            // verification
+            assertThatThrownBy(() -> VirtualThreads.requireFreeCarrier(8))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageStartingWith("8 pooled connections can pin all 8 carrier threads");
+        } finally {
+            if (parallelism == null) {
+                System.clearProperty("jdk.virtualThreadScheduler.parallelism");
+            } else {
+                System.setProperty("jdk.virtualThreadScheduler.parallelism", parallelism);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.zoomalan.libraryapi.model.repository;
 
+import com.zoomalan.libraryapi.api.dto.BookDTO;
 import com.zoomalan.libraryapi.model.entity.Book;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -7,12 +8,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -84,6 +93,19 @@ public class BookRepositoryTest {
         assertThat(savedBook.getId()).isNotNull();
     }
 
+    @Test
+    @DisplayName("Should reject a second book with the same isbn")
+    public void uniqueIsbnTest() {
+        // scenario
+        entityManager.persist(createNewBook("123"));
+
+        // execution and verification
+        assertThatThrownBy(() -> repository.saveAndFlush(createNewBook("123")))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .satisfies(e -> assertThat(NestedExceptionUtils.getMostSpecificCause(e).getMessage())
+                        .containsIgnoringCase("uk_book_isbn"));
+    }
+
     @Test
     @DisplayName("Should delete a book")
     public void deleteBookTest() {
@@ -98,4 +120,60 @@ public class BookRepositoryTest {
         Book deletedBook = entityManager.find(Book.class, book.getId());
         assertThat(deletedBook).isNull();
     }
+
+    @Test
+    @DisplayName("Should seek the books after the given id")
+    public void findAfterTest() {
+        // scenario
+        Book first = entityManager.persist(createNewBook("123"));
+        Book second = entityManager.persist(createNewBook("456"));
+        Book third = entityManager.persist(createNewBook("789"));
+
+        // execution
+        Slice<Book> result = repository.findAfter(first.getId(), "spring", null, null,
+                PageRequest.of(0, 1, Sort.by("id")));
+
+        // verification
+        assertThat(result.getContent()).containsExactly(second);
+        assertThat(result.hasNext()).isTrue();
+
+        Slice<Book> last = repository.findAfter(second.getId(), null, null, null,
+                PageRequest.of(0, 1, Sort.by("id")));
+        assertThat(last.getContent()).containsExactly(third);
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should reject saving a book whose version is stale")
+    public void staleVersionTest() {
+        // scenario
+        Book book = entityManager.persistFlushFind(createNewBook("123"));
+        entityManager.detach(book);
+
+        Book current = repository.findById(book.getId()).get();
+        current.setTitle("Second edition");
+        repository.saveAndFlush(current);
+
+        // execution / verification
+        assertThat(current.getVersion()).isEqualTo(book.getVersion() + 1);
+        book.setTitle("Stale edition");
+        assertThatThrownBy(() -> repository.saveAndFlush(book))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
+    @Test
+    @DisplayName("Should filter books straight into DTOs")
+    public void findDTOsTest() {
+        // scenario
+        Book book = entityManager.persist(createNewBook("123"));
+        entityManager.persist(Book.builder().title("Clean Code").author("Bob").isbn("456").build());
+
+        // execution
+        Page<BookDTO> result = repository.findDTOs("SPRING", null, null, PageRequest.of(0, 10));
+
+        // verification
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        assertThat(result.getContent()).containsExactly(
+                new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn()));
+    }
 }
@@ -0,0 +1,95 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.Book;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Optional;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookSecondLevelCacheTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    Book book;
+
+    @BeforeEach
+    public void setup() {
+        book = repository.save(createNewBook("123"));
+        entityManagerFactory.getCache().evict(Book.class);
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictNaturalIdData(Book.class);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should read a book from the database once and then from the cache")
+    public void findByIdCachedTest() {
+        // execution
+        Optional<Book> first = repository.findById(book.getId());
+        Optional<Book> second = repository.findById(book.getId());
+
+        // verification
+        assertThat(first).isPresent();
+        assertThat(second.get().getIsbn()).isEqualTo("123");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should resolve a cached isbn without touching the database")
+    public void findByIsbnCachedTest() {
+        // execution
+        Optional<Book> first = repository.findByIsbn("123");
+        Optional<Book> second = repository.findByIsbn("123");
+        Optional<Book> unknown = repository.findByIsbn("456");
+
+        // verification
+        assertThat(first.get().getId()).isEqualTo(book.getId());
+        assertThat(second.get().getId()).isEqualTo(book.getId());
+        assertThat(unknown).isNotPresent();
+        assertThat(statistics.getNaturalIdCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should drop an updated book from the cache")
+    public void updateEvictsTest() {
+        // scenario
+        repository.findById(book.getId());
+        book.setTitle("Hibernate");
+
+        // execution
+        repository.save(book);
+
+        // verification
+        assertThat(repository.findById(book.getId()).get().getTitle()).isEqualTo("Hibernate");
+    }
+}
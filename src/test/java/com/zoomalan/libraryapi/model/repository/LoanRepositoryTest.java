@@ -1,5 +1,8 @@
 package com.zoomalan.libraryapi.model.repository;
 
+import com.zoomalan.libraryapi.api.dto.LoanDTO;
+import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
+import com.zoomalan.libraryapi.exceptions.BusinessException;
 import com.zoomalan.libraryapi.model.entity.Book;
 import com.zoomalan.libraryapi.model.entity.Loan;
 import org.junit.jupiter.api.DisplayName;
@@ -8,16 +11,26 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -30,6 +43,9 @@ public class LoanRepositoryTest {
     @Autowired
     TestEntityManager entityManager;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @Test
     @DisplayName("Should verify if exists loan there is unreturned loan for a book")
     public void existsByBookAndNotReturnedTest() {
@@ -44,18 +60,256 @@ public class LoanRepositoryTest {
     }
 
     @Test
-    @DisplayName("Should find a loan by the book's ISBN")
-    public void findByBookOrCustomerTest() {
+    @DisplayName("Should find the loans matching any of the book's ISBN or the customer")
+    public void searchTest() {
         // scenario
         Loan loan = createAndPersistLoan(LocalDate.now());
+        Book other = entityManager.persist(createNewBook("456"));
+        Loan byCustomer = entityManager.persist(Loan.builder().book(other).customer("Alan").loanDate(LocalDate.now()).build());
+        entityManager.persist(Loan.builder().book(other).customer("Bob").loanDate(LocalDate.now()).returned(true).build());
 
-        Page<Loan> result = repository.findByBookIsbnOrCustomer("123", "Alan", PageRequest.of(0, 10));
+        // execution
+        Page<LoanDTO> result = repository.searchDTOs(LoanFilterDTO.builder().isbn("123").customer("Alan").build(),
+                PageRequest.of(0, 10));
 
-        assertThat(result.getContent()).hasSize(1);
-        assertThat(result.getContent()).contains(loan);
+        // verification
+        assertThat(result.getContent()).extracting(LoanDTO::getId).containsExactly(loan.getId(), byCustomer.getId());
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
         assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
+        assertThat(result.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should narrow the search by email, loan date range and returned status")
+    public void searchNarrowingTest() {
+        // scenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Loan old = entityManager.persist(Loan.builder().book(book).customer("Alan").customerEmail("alan@email.com")
+                .loanDate(LocalDate.now().minusDays(10)).returned(true).build());
+        Loan recent = entityManager.persist(Loan.builder().book(book).customer("Alan").customerEmail("alan@email.com")
+                .loanDate(LocalDate.now().minusDays(1)).build());
+
+        // execution
+        Page<LoanDTO> open = repository.searchDTOs(LoanFilterDTO.builder().email("alan@email.com").returned(false).build(),
+                PageRequest.of(0, 10));
+        Page<LoanDTO> inRange = repository.searchDTOs(LoanFilterDTO.builder()
+                .loanDateFrom(LocalDate.now().minusDays(20)).loanDateTo(LocalDate.now().minusDays(5)).build(),
+                PageRequest.of(0, 10));
+        Page<LoanDTO> all = repository.searchDTOs(new LoanFilterDTO(),
+                PageRequest.of(0, 10, Sort.by("loanDate").descending()));
+
+        // verification
+        assertThat(open.getContent()).extracting(LoanDTO::getId).containsExactly(recent.getId());
+        assertThat(inRange.getContent()).extracting(LoanDTO::getId).containsExactly(old.getId());
+        assertThat(all.getContent()).extracting(LoanDTO::getId).containsExactly(recent.getId(), old.getId());
+    }
+
+    @Test
+    @DisplayName("Should refuse to sort loans by something other than a loan column")
+    public void searchUnknownSortTest() {
+        assertThatThrownBy(() -> repository.searchDTOs(new LoanFilterDTO(), PageRequest.of(0, 10, Sort.by("book.title"))))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Cannot sort loans by book.title");
+    }
+
+    @Test
+    @DisplayName("Should seek the loans after the given id")
+    public void searchAfterTest() {
+        // scenario
+        Loan loan = createAndPersistLoan(LocalDate.now());
+        LoanFilterDTO filter = LoanFilterDTO.builder().isbn("123").customer("Alan").build();
+
+        Slice<Loan> firstPage = repository.searchAfter(filter, null, 10);
+        Slice<Loan> nextPage = repository.searchAfter(filter, loan.getId(), 10);
+
+        assertThat(firstPage.getContent()).containsExactly(loan);
+        assertThat(firstPage.hasNext()).isFalse();
+        assertThat(nextPage.getContent()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should find loans by the book's ISBN straight into DTOs")
+    public void searchDTOsTest() {
+        // scenario
+        Loan loan = createAndPersistLoan(LocalDate.now());
+
+        Page<LoanDTO> result = repository.searchDTOs(LoanFilterDTO.builder().isbn("123").customer("Nobody").build(),
+                PageRequest.of(0, 10));
+
         assertThat(result.getTotalElements()).isEqualTo(1);
+        LoanDTO dto = result.getContent().get(0);
+        assertThat(dto.getId()).isEqualTo(loan.getId());
+        assertThat(dto.getCustomer()).isEqualTo("Alan");
+        assertThat(dto.getIsbn()).isEqualTo("123");
+        assertThat(dto.getBook().getId()).isEqualTo(loan.getBook().getId());
+    }
+
+    @Test
+    @DisplayName("Should look every alternative of a search up through an index")
+    public void searchPlanTest() {
+        LoanSearchQuery search = new LoanSearchQuery(LoanFilterDTO.builder()
+                .isbn("123").customer("Alan").email("alan@email.com").returned(false).build());
+
+        String plan = explain(search.page(Sort.unsorted(), "p.id", ""), search.parameters());
+
+        assertThat(plan)
+                .contains("PUBLIC.UK_BOOK_ISBN")
+                .contains("ID_BOOK = B.ID")
+                .contains("PUBLIC.IDX_LOAN_CUSTOMER:")
+                .contains("PUBLIC.IDX_LOAN_CUSTOMER_EMAIL")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Should look a loan date range up through an index")
+    public void searchDateRangePlanTest() {
+        LoanSearchQuery search = new LoanSearchQuery(LoanFilterDTO.builder()
+                .loanDateFrom(LocalDate.now().minusDays(7)).loanDateTo(LocalDate.now()).build());
+
+        String plan = explain(search.count(), search.parameters());
+
+        assertThat(plan).contains("PUBLIC.IDX_LOAN_DATE_RETURNED").doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Should find the loans of a book straight into DTOs")
+    public void findDTOsByBookIdTest() {
+        // scenario
+        Loan loan = createAndPersistLoan(LocalDate.now());
+
+        Page<LoanDTO> result = repository.findDTOsByBookId(loan.getBook().getId(), PageRequest.of(0, 10));
+
+        assertThat(result.getContent()).extracting(LoanDTO::getId).containsExactly(loan.getId());
+        assertThat(result.getContent().get(0).getBook().getIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Should check out a book by isbn with a single insert")
+    public void checkoutTest() {
+        // scenario
+        Book book = entityManager.persistFlushFind(createNewBook("123"));
+
+        // execution
+        Optional<Loan> checkedOut = repository.checkout("123", "Alan", "alan@email.com", LocalDate.now());
+
+        // verification
+        assertThat(checkedOut).isPresent();
+        assertThat(checkedOut.get().getBook().getId()).isEqualTo(book.getId());
+        Loan loan = entityManager.find(Loan.class, checkedOut.get().getId());
+        assertThat(loan.getBook().getId()).isEqualTo(book.getId());
+        assertThat(loan.getCustomerEmail()).isEqualTo("alan@email.com");
+        assertThat(loan.getReturned()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should not check out an isbn that is not registered")
+    public void checkoutUnknownIsbnTest() {
+        Optional<Loan> checkedOut = repository.checkout("123", "Alan", null, LocalDate.now());
+
+        assertThat(checkedOut).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should refuse a second open loan for the same book")
+    public void checkoutLoanedBookTest() {
+        // scenario
+        createAndPersistLoan(LocalDate.now());
+        entityManager.flush();
+
+        // execution / verification
+        assertThatThrownBy(() -> repository.checkout("123", "Bob", null, LocalDate.now()))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    @DisplayName("Should check out several books in one batch")
+    public void checkoutAllTest() {
+        // scenario
+        Book first = entityManager.persist(createNewBook("123"));
+        Book second = entityManager.persist(createNewBook("456"));
+        entityManager.flush();
+
+        // execution
+        Map<String, Loan> loans = repository.checkoutAll(Arrays.asList("123", "789", "456"), "Alan", null, LocalDate.now());
+
+        // verification
+        assertThat(loans).containsOnlyKeys("123", "456");
+        assertThat(loans.get("123").getBook().getId()).isEqualTo(first.getId());
+        assertThat(loans.get("456").getBook().getId()).isEqualTo(second.getId());
+        assertThat(entityManager.find(Loan.class, loans.get("456").getId()).getCustomer()).isEqualTo("Alan");
+    }
+
+    @Test
+    @DisplayName("Should refuse a batch holding a book with an open loan")
+    public void checkoutAllLoanedBookTest() {
+        // scenario
+        createAndPersistLoan(LocalDate.now());
+        entityManager.persist(createNewBook("456"));
+        entityManager.flush();
+
+        // execution / verification
+        assertThatThrownBy(() -> repository.checkoutAll(Arrays.asList("456", "123"), "Bob", null, LocalDate.now()))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    @DisplayName("Should mark open loans returned in one statement")
+    public void markReturnedTest() {
+        // scenario
+        Loan open = createAndPersistLoan(LocalDate.now());
+        Book other = entityManager.persist(createNewBook("456"));
+        Loan returned = entityManager.persist(Loan.builder().book(other).customer("Bob").returned(true).build());
+        entityManager.flush();
+
+        // execution
+        List<Loan> locked = repository.lockForReturn(Arrays.asList(open.getId(), returned.getId(), -1L));
+        int marked = repository.markReturned(Arrays.asList(open.getId(), returned.getId()));
+
+        // verification
+        assertThat(locked).extracting(Loan::getId).containsExactlyInAnyOrder(open.getId(), returned.getId());
+        assertThat(locked).filteredOn(Loan::getReturned).extracting(loan -> loan.getBook().getId())
+                .containsExactly(other.getId());
+        assertThat(marked).isEqualTo(1);
+        entityManager.clear();
+        assertThat(entityManager.find(Loan.class, open.getId()).getReturned()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should change the returned flag only when it differs, taking an unset flag as not returned")
+    public void setReturnedTest() {
+        // scenario
+        Loan loan = entityManager.persist(Loan.builder().book(entityManager.persist(createNewBook("123")))
+                .customer("Alan").build());
+        entityManager.flush();
+
+        // execution
+        int reopened = repository.setReturned(loan.getId(), false);
+        int returned = repository.setReturned(loan.getId(), true);
+        int returnedAgain = repository.setReturned(loan.getId(), true);
+        int unknown = repository.setReturned(-1L, true);
+
+        // verification
+        assertThat(reopened).isZero();
+        assertThat(returned).isEqualTo(1);
+        assertThat(returnedAgain).isZero();
+        assertThat(unknown).isZero();
+        entityManager.clear();
+        assertThat(entityManager.find(Loan.class, loan.getId()).getReturned()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should find the open loan of each book by isbn")
+    public void findOpenLoanIdsByIsbnTest() {
+        // scenario
+        Loan loan = createAndPersistLoan(LocalDate.now());
+        entityManager.persist(createNewBook("456"));
+        entityManager.flush();
+
+        // execution
+        Map<String, Long> openLoans = repository.findOpenLoanIdsByIsbn(Arrays.asList("123", "456", "789"));
+
+        // verification
+        assertThat(openLoans).hasSize(2).containsEntry("123", loan.getId()).containsEntry("456", null);
     }
 
     @Test
@@ -78,6 +332,13 @@ public class LoanRepositoryTest {
         assertThat(result).isEmpty();
     }
 
+    private String explain(String sql, Map<String, Object> parameters) {
+        Map<String, Object> bound = new HashMap<>(parameters);
+        bound.put("limit", 10);
+        bound.put("offset", 0);
+        return new NamedParameterJdbcTemplate(jdbcTemplate).queryForObject(" explain " + sql, bound, String.class);
+    }
+
     public Loan createAndPersistLoan(LocalDate loanDate) {
         Book book = createNewBook("123");
         entityManager.persist(book);
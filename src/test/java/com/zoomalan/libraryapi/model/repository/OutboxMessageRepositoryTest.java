@@ -0,0 +1,95 @@
+package com.zoomalan.libraryapi.model.repository;
+
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class OutboxMessageRepositoryTest {
+
+    @Autowired
+    OutboxMessageRepository repository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Should claim pending messages in id order up to the batch size")
+    public void claimTest() {
+        // scenario
+        LocalDateTime now = LocalDateTime.now();
+        repository.enqueue(Arrays.asList(message("a@email.com"), message("b@email.com"), message("c@email.com")));
+
+        // execution
+        int claimed = repository.claim("first", now, now.plusMinutes(5), 5, 2);
+        int claimedAgain = repository.claim("second", now, now.plusMinutes(5), 5, 2);
+
+        // verification
+        assertThat(claimed).isEqualTo(2);
+        assertThat(claimedAgain).isEqualTo(1);
+        assertThat(repository.findByClaimedByOrderById("first"))
+                .extracting(OutboxMessage::getRecipient).containsExactly("a@email.com", "b@email.com");
+        assertThat(repository.findByClaimedByOrderById("second"))
+                .extracting(OutboxMessage::getRecipient).containsExactly("c@email.com");
+    }
+
+    @Test
+    @DisplayName("Should not claim sent messages, and claim released ones once their retry time has passed")
+    public void settleTest() {
+        // scenario
+        LocalDateTime now = LocalDateTime.now();
+        repository.enqueue(Arrays.asList(message("a@email.com"), message("b@email.com")));
+        repository.claim("first", now, now.plusMinutes(5), 5, 10);
+        List<OutboxMessage> batch = repository.findByClaimedByOrderById("first");
+
+        // execution
+        repository.markSent(Collections.singletonList(batch.get(0).getId()), now);
+        repository.release(batch.get(1).getId(), "550 rejected", now.plusMinutes(1));
+        entityManager.clear();
+
+        // verification
+        assertThat(repository.claim("early", now, now.plusMinutes(5), 5, 10)).isZero();
+        assertThat(repository.claim("later", now.plusMinutes(2), now.plusMinutes(7), 5, 10)).isEqualTo(1);
+        OutboxMessage retried = repository.findByClaimedByOrderById("later").get(0);
+        assertThat(retried.getRecipient()).isEqualTo("b@email.com");
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getLastError()).isEqualTo("550 rejected");
+    }
+
+    @Test
+    @DisplayName("Should not claim a message that used all its attempts")
+    public void exhaustedAttemptsTest() {
+        // scenario
+        LocalDateTime now = LocalDateTime.now();
+        repository.enqueue(Collections.singletonList(message("a@email.com")));
+        repository.claim("first", now, now.plusMinutes(5), 1, 10);
+        repository.release(repository.findByClaimedByOrderById("first").get(0).getId(), "550 rejected", now);
+
+        // execution / verification
+        assertThat(repository.claim("second", now.plusMinutes(1), now.plusMinutes(6), 1, 10)).isZero();
+    }
+
+    private static OutboxMessage message(String recipient) {
+        return OutboxMessage.builder()
+                .recipient(recipient)
+                .subject("Overdue loan book")
+                .body("Overdue")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,180 @@
+package com.zoomalan.libraryapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zoomalan.libraryapi.api.dto.BookImportResultDTO;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.service.impl.BookImportServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import javax.validation.Validation;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class BookImportServiceTest {
+
+    BookImportService service;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @BeforeEach
+    public void setup() {
+        this.service = new BookImportServiceImpl(repository, jdbcTemplate, transactionManager, entityManagerFactory,
+                new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), 2, 1000);
+    }
+
+    @Test
+    @DisplayName("Should import books from NDJSON rejecting invalid and duplicated rows")
+    public void importNdjsonTest() throws Exception {
+        // scenario
+        entityManager.persist(createNewBook("001"));
+        String body = "not json\n" +
+                "{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"002\"}\n" +
+                "{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"002\"}\n" +
+                "\n" +
+                "{\"title\":\"Spring Boot\",\"author\":\"Alan\",\"isbn\":\"001\"}\n" +
+                "{\"title\":\"Kotlin\",\"author\":\"Alan\",\"isbn\":\"003\"}\n" +
+                "{\"title\":\"\",\"author\":\"Alan\",\"isbn\":\"004\"}\n";
+
+        // execution
+        BookImportResultDTO result = service.importBooks(new StringReader(body), DataFormat.NDJSON);
+
+        // verification
+        assertThat(result.getTotal()).isEqualTo(6);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getRejected()).isEqualTo(4);
+        assertThat(result.getRejectedRows())
+                .extracting("line", "error")
+                .containsExactlyInAnyOrder(
+                        tuple(1L, "Malformed row"),
+                        tuple(3L, "Isbn duplicated in import"),
+                        tuple(5L, "Isbn already registered"),
+                        tuple(7L, "title must not be empty"));
+        assertThat(repository.findIsbnsIn(Arrays.asList("002", "003"))).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should import books from CSV with header and quoted fields")
+    public void importCsvTest() throws Exception {
+        String body = "title,author,isbn\n" +
+                "\"Spring, in Action\",Craig,010\n" +
+                "Clean Code,\"Robert \"\"Uncle Bob\"\" Martin\",011\n" +
+                "Missing,fields\n";
+
+        BookImportResultDTO result = service.importBooks(new StringReader(body), DataFormat.CSV);
+
+        assertThat(result.getTotal()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getRejectedRows()).hasSize(1);
+        assertThat(result.getRowsPerSecond()).isPositive();
+        assertThat(repository.findByIsbn("010").get().getTitle()).isEqualTo("Spring, in Action");
+        assertThat(repository.findByIsbn("011").get().getAuthor()).isEqualTo("Robert \"Uncle Bob\" Martin");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Should reject the rows whose isbn got registered after the lookup and import the rest")
+    public void importConcurrentlyRegisteredIsbnTest() throws Exception {
+        // scenario: the lookup misses a book registered right after it
+        BookRepository staleLookup = Mockito.mock(BookRepository.class);
+        Mockito.when(staleLookup.findIsbnsIn(Mockito.anyCollection())).thenReturn(Collections.emptyList());
+        BookImportService service = new BookImportServiceImpl(staleLookup, jdbcTemplate, transactionManager,
+                entityManagerFactory, new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), 3, 1000);
+        jdbcTemplate.update("insert into book (title, author, isbn) values ('Java', 'Alan', '021')");
+        String body = "{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"020\"}\n" +
+                "{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"021\"}\n" +
+                "{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"022\"}\n";
+
+        try {
+            // execution
+            BookImportResultDTO result = service.importBooks(new StringReader(body), DataFormat.NDJSON);
+
+            // verification
+            assertThat(result.getImported()).isEqualTo(2);
+            assertThat(result.getRejectedRows())
+                    .extracting("line", "isbn", "error")
+                    .containsExactly(tuple(2L, "021", "Isbn already registered"));
+            assertThat(jdbcTemplate.queryForObject("select count(*) from book where isbn in ('020', '021', '022')",
+                    Long.class)).isEqualTo(3);
+        } finally {
+            jdbcTemplate.update("delete from book where isbn in ('020', '021', '022')");
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Should reject a row the database refuses and import the rest of its chunk and the next ones")
+    public void importRowViolatingColumnTest() throws Exception {
+        // scenario: a title longer than its column passes validation but not the insert
+        String title = String.join("", Collections.nCopies(300, "x"));
+        String body = "{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"030\"}\n" +
+                "{\"title\":\"" + title + "\",\"author\":\"Alan\",\"isbn\":\"031\"}\n" +
+                "{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"032\"}\n";
+
+        try {
+            // execution
+            BookImportResultDTO result = service.importBooks(new StringReader(body), DataFormat.NDJSON);
+
+            // verification
+            assertThat(result.getImported()).isEqualTo(2);
+            assertThat(result.getRejectedRows())
+                    .extracting("line", "isbn", "error")
+                    .containsExactly(tuple(2L, "031", "Row violates a database constraint"));
+            assertThat(jdbcTemplate.queryForObject("select count(*) from book where isbn in ('030', '031', '032')",
+                    Long.class)).isEqualTo(2);
+        } finally {
+            jdbcTemplate.update("delete from book where isbn in ('030', '031', '032')");
+        }
+    }
+
+    @Test
+    @DisplayName("Should count every rejected row but report only the first ones")
+    public void importRejectedRowsCappedTest() throws Exception {
+        // scenario
+        BookImportService service = new BookImportServiceImpl(repository, jdbcTemplate, transactionManager,
+                entityManagerFactory, new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), 2, 2);
+        String body = "bad\nbad\nbad\n{\"title\":\"Java\",\"author\":\"Alan\",\"isbn\":\"040\"}\n";
+
+        // execution
+        BookImportResultDTO result = service.importBooks(new StringReader(body), DataFormat.NDJSON);
+
+        // verification
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getRejected()).isEqualTo(3);
+        assertThat(result.getRejectedRows()).extracting("line").containsExactly(1L, 2L);
+    }
+}
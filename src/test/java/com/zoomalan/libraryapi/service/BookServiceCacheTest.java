@@ -0,0 +1,141 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.config.CacheConfig;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.service.impl.BookServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@ContextConfiguration(classes = BookServiceCacheTest.Config.class)
+public class BookServiceCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @MockBean
+    BookRepository repository;
+
+    @BeforeEach
+    public void setup() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @DisplayName("Should hit the repository only once when getting the same isbn repeatedly")
+    public void getBookByIsbnCachedTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+
+        service.getBookByIsbn("123");
+        Optional<Book> cached = service.getBookByIsbn("123");
+
+        assertThat(cached).contains(book);
+        verify(repository, times(1)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Should not cache an isbn that is not registered")
+    public void getBookByIsbnNotFoundNotCachedTest() {
+        when(repository.findByIsbn("123")).thenReturn(Optional.empty());
+
+        service.getBookByIsbn("123");
+        service.getBookByIsbn("123");
+
+        verify(repository, times(2)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Should evict the cached book when it is updated")
+    public void updateEvictsCacheTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        when(repository.save(book)).thenReturn(book);
+
+        service.getById(1L);
+        service.getBookByIsbn("123");
+        service.update(book);
+        service.getById(1L);
+        service.getBookByIsbn("123");
+
+        verify(repository, times(2)).findById(1L);
+        verify(repository, times(2)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Should evict the book cached by a read that ran while it was being updated")
+    public void updateEvictsConcurrentlyCachedBookTest() {
+        // scenario
+        Book stale = Book.builder().id(1L).isbn("123").title("old").build();
+        Book book = Book.builder().id(1L).isbn("123").title("new").build();
+        when(repository.findById(1L)).thenReturn(Optional.of(stale));
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(stale));
+        when(repository.save(book)).thenAnswer(invocation -> {
+            service.getById(1L);
+            service.getBookByIsbn("123");
+            when(repository.findById(1L)).thenReturn(Optional.of(book));
+            when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+            return book;
+        });
+
+        // execution
+        service.update(book);
+
+        // verification
+        assertThat(service.getById(1L)).contains(book);
+        assertThat(service.getBookByIsbn("123")).contains(book);
+    }
+
+    @Test
+    @DisplayName("Should evict the cached book when it is deleted")
+    public void deleteEvictsCacheTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+
+        service.getById(1L);
+        service.getBookByIsbn("123");
+        service.deleteById(1L);
+        service.getById(1L);
+        service.getBookByIsbn("123");
+
+        verify(repository, times(2)).findById(1L);
+        verify(repository, times(2)).findByIsbn("123");
+    }
+
+    @Import(CacheConfig.class)
+    static class Config {
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new CaffeineCacheManager(CacheConfig.BOOKS_BY_ID, CacheConfig.BOOKS_BY_ISBN);
+        }
+
+        @Bean
+        public BookService bookService(BookRepository repository) {
+            return new BookServiceImpl(repository);
+        }
+    }
+}
@@ -10,15 +10,10 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
-import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -80,6 +75,39 @@ public class BookServiceTest {
         verify(repository, never()).save(book);
     }
 
+    @Test
+    @DisplayName("Should throw a business error when the isbn is registered concurrently")
+    public void shouldNotSaveABookWhenIsbnConstraintFails() {
+        // scenery
+        Book book = createValidBook();
+        when(repository.existsByIsbn(anyString())).thenReturn(false);
+        when(repository.save(book)).thenThrow(new DataIntegrityViolationException("uk_book_isbn"));
+
+        // execution
+        Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+
+        // verification
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Isbn already registered");
+    }
+
+    @Test
+    @DisplayName("Should not report other integrity failures as a registered isbn")
+    public void shouldRethrowOtherConstraintFailures() {
+        // scenery
+        Book book = createValidBook();
+        DataIntegrityViolationException notNull = new DataIntegrityViolationException("NULL not allowed for column ISBN");
+        when(repository.existsByIsbn(anyString())).thenReturn(false);
+        when(repository.save(book)).thenThrow(notNull);
+
+        // execution
+        Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+
+        // verification
+        assertThat(exception).isSameAs(notNull);
+    }
+
     @Test
     @DisplayName("Should get book by id")
     public void getByIdTest() {
@@ -177,30 +205,6 @@ public class BookServiceTest {
         verify(repository, never()).save(book);
     }
 
-    @Test
-    @DisplayName("Should filter books with properties")
-    public void findBookTest() {
-        // given
-        Book book = createValidBook();
-
-        PageRequest pageRequest = PageRequest.of(0, 10);
-
-        List<Book> books = Collections.singletonList(book);
-
-        Page<Book> page = new PageImpl<Book>(books, pageRequest, 1);
-        when(repository.findAll(any(Example.class), any(PageRequest.class)))
-                .thenReturn(page);
-
-        // when
-        Page<Book> result = service.find(book, pageRequest);
-
-        // then
-        assertThat(result.getTotalElements()).isEqualTo(1);
-        assertThat(result.getContent()).isEqualTo(books);
-        assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
-        assertThat(result.getPageable().getPageSize()).isEqualTo(10);
-    }
-
     @Test
     @DisplayName("Should get a book by Isbn")
     public void getBookByIsbnTest() {
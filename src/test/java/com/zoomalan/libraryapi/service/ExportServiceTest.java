@@ -0,0 +1,82 @@
+package com.zoomalan.libraryapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import com.zoomalan.libraryapi.service.impl.ExportServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class ExportServiceTest {
+
+    ExportService service;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @BeforeEach
+    public void setup() {
+        this.service = new ExportServiceImpl(bookRepository, loanRepository, entityManager.getEntityManager(),
+                new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("Should export every book as CSV and detach them")
+    public void exportBooksCsvTest() throws Exception {
+        Book book = createNewBook("123");
+        book.setTitle("Spring, Boot");
+        entityManager.persist(book);
+        entityManager.flush();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportBooks(out, DataFormat.CSV);
+
+        assertThat(out.toString(StandardCharsets.UTF_8.name()))
+                .isEqualTo("id,title,author,isbn\n" + book.getId() + ",\"Spring, Boot\",Alan,123\n");
+        assertThat(entityManager.getEntityManager().contains(book)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should export every loan as NDJSON with its book")
+    public void exportLoansNdjsonTest() throws Exception {
+        Book book = entityManager.persist(createNewBook("123"));
+        Loan loan = entityManager.persist(Loan.builder().book(book).customer("Alan")
+                .customerEmail("alan@email.com").loanDate(LocalDate.now()).build());
+        entityManager.flush();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportLoans(out, DataFormat.NDJSON);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertThat(lines).hasSize(1);
+        assertThat(lines[0])
+                .contains("\"id\":" + loan.getId())
+                .contains("\"email\":\"alan@email.com\"")
+                .contains("\"book\":{\"id\":" + book.getId());
+    }
+}
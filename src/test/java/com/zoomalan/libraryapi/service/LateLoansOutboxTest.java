@@ -0,0 +1,94 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.JobExecution;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.JobExecutionRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import com.zoomalan.libraryapi.model.repository.OutboxMessageRepository;
+import com.zoomalan.libraryapi.service.impl.MailDispatcher;
+import com.zoomalan.libraryapi.service.impl.OutboxDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class LateLoansOutboxTest {
+
+    @Autowired
+    ScheduleService scheduleService;
+
+    @Autowired
+    OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    JobExecutionRepository jobExecutionRepository;
+
+    @MockBean
+    MailDispatcher mailDispatcher;
+
+    @AfterEach
+    public void tearDown() {
+        outboxRepository.deleteAll();
+        jobExecutionRepository.deleteAll();
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should queue the late loan notice with the job checkpoint and deliver it from the outbox")
+    public void lateLoanNoticeTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        Loan late = loanRepository.save(Loan.builder().book(book).customer("Alan").customerEmail("alan@email.com")
+                .loanDate(LocalDate.now().minusDays(10)).build());
+        when(mailDispatcher.submit(any(SimpleMailMessage.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // execution
+        scheduleService.sendMailToLateLoans();
+
+        // verification
+        List<OutboxMessage> queued = outboxRepository.findAll();
+        assertThat(queued).extracting(OutboxMessage::getRecipient).containsExactly("alan@email.com");
+        assertThat(queued.get(0).getSentAt()).isNull();
+        List<JobExecution> executions = jobExecutionRepository.findAll();
+        assertThat(executions).hasSize(1);
+        assertThat(executions.get(0).getLastLoanId()).isEqualTo(late.getId());
+        assertThat(executions.get(0).getFinishedAt()).isNotNull();
+
+        outboxDispatcher.dispatch();
+
+        verify(mailDispatcher).submit(any(SimpleMailMessage.class));
+        assertThat(outboxRepository.findAll()).allSatisfy(message -> assertThat(message.getSentAt()).isNotNull());
+    }
+}
@@ -0,0 +1,87 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.exceptions.BusinessException;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class LoanCheckoutConcurrencyTest {
+
+    private static final int TELLERS = 8;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should lend a book to exactly one of several concurrent tellers")
+    public void concurrentCheckoutTest() throws Exception {
+        // scenario
+        bookRepository.save(createNewBook("123"));
+        ExecutorService tellers = Executors.newFixedThreadPool(TELLERS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // execution
+        List<Future<Optional<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < TELLERS; i++) {
+            String customer = "Customer " + i;
+            results.add(tellers.submit(() -> {
+                start.await();
+                return loanService.checkout("123", customer, null);
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        int alreadyLoaned = 0;
+        for (Future<Optional<Long>> result : results) {
+            try {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isPresent();
+                winners++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+                alreadyLoaned++;
+            }
+        }
+        tellers.shutdown();
+
+        // verification
+        assertThat(winners).isEqualTo(1);
+        assertThat(alreadyLoaned).isEqualTo(TELLERS - 1);
+        assertThat(loanRepository.count()).isEqualTo(1);
+    }
+}
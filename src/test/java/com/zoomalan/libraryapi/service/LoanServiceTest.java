@@ -1,5 +1,7 @@
 package com.zoomalan.libraryapi.service;
 
+import com.zoomalan.libraryapi.api.dto.BatchCheckoutResultDTO;
+import com.zoomalan.libraryapi.api.dto.BulkReturnResultDTO;
 import com.zoomalan.libraryapi.api.dto.LoanFilterDTO;
 import com.zoomalan.libraryapi.exceptions.BusinessException;
 import com.zoomalan.libraryapi.model.entity.Book;
@@ -11,19 +13,26 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
@@ -35,9 +44,16 @@ public class LoanServiceTest {
     @MockBean
     LoanRepository repository;
 
+    @MockBean
+    LoanStatsService statsService;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
     @BeforeEach
     public void setup() {
-        this.service = new LoanServiceImpl(repository);
+        this.service = new LoanServiceImpl(repository, statsService, transactionManager, 2);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
     }
 
     @Test
@@ -66,6 +82,7 @@ public class LoanServiceTest {
         assertThat(loan.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
         assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+        verify(statsService).loanCreated(1L, savedLoan.getLoanDate(), true);
     }
 
     @Test
@@ -88,6 +105,83 @@ public class LoanServiceTest {
                 .hasMessage("Book already loaned");
 
         verify(repository, never()).save(saving);
+        verifyNoInteractions(statsService);
+    }
+
+    @Test
+    @DisplayName("Should check out a book in a single repository call")
+    public void checkoutTest() {
+        when(repository.checkout(eq("123"), eq("Alan"), eq("alan@email.com"), any(LocalDate.class)))
+                .thenReturn(Optional.of(Loan.builder().id(1L).book(Book.builder().id(2L).build())
+                        .loanDate(LocalDate.now()).returned(false).build()));
+
+        Optional<Long> id = service.checkout("123", "Alan", "alan@email.com");
+
+        assertThat(id).contains(1L);
+        verify(repository, never()).existsByBookAndNotReturned(any(Book.class));
+        verify(statsService).loanCreated(eq(2L), any(LocalDate.class), eq(true));
+    }
+
+    @Test
+    @DisplayName("Should return a Business Error when checking out a book with an open loan")
+    public void checkoutLoanedBookTest() {
+        when(repository.checkout(eq("123"), eq("Alan"), isNull(), any(LocalDate.class)))
+                .thenThrow(new DuplicateKeyException("uk_loan_open_book"));
+
+        Throwable exception = catchThrowable(() -> service.checkout("123", "Alan", null));
+
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+    }
+
+    @Test
+    @DisplayName("Should lend no book of a batch when one of them cannot be lent")
+    public void checkoutAllOrNothingTest() {
+        // scenario
+        Map<String, Long> openLoans = new HashMap<>();
+        openLoans.put("123", null);
+        openLoans.put("456", 7L);
+        when(repository.findOpenLoanIdsByIsbn(Arrays.asList("123", "456", "789"))).thenReturn(openLoans);
+
+        // execution
+        BatchCheckoutResultDTO result = service.checkoutAll(Arrays.asList("123", "456", "789", "123"), "Alan", null,
+                CheckoutMode.ALL_OR_NOTHING);
+
+        // verification
+        assertThat(result.getLoanIds()).isEmpty();
+        assertThat(result.getLoanedIsbns()).containsExactly("456");
+        assertThat(result.getUnknownIsbns()).containsExactly("789");
+        verify(repository, never()).checkoutAll(anyList(), anyString(), any(), any(LocalDate.class));
+        verifyNoInteractions(statsService);
+    }
+
+    @Test
+    @DisplayName("Should lend the available books of a partial batch, checking again after a concurrent checkout")
+    public void checkoutPartialTest() {
+        // scenario
+        Map<String, Long> firstCheck = new HashMap<>();
+        firstCheck.put("123", null);
+        firstCheck.put("456", null);
+        Map<String, Long> secondCheck = new HashMap<>();
+        secondCheck.put("123", null);
+        secondCheck.put("456", 7L);
+        when(repository.findOpenLoanIdsByIsbn(Arrays.asList("123", "456", "789"))).thenReturn(firstCheck, secondCheck);
+        when(repository.checkoutAll(eq(Arrays.asList("123", "456")), eq("Alan"), isNull(), any(LocalDate.class)))
+                .thenThrow(new DuplicateKeyException("uk_loan_open_book"));
+        when(repository.checkoutAll(eq(Collections.singletonList("123")), eq("Alan"), isNull(), any(LocalDate.class)))
+                .thenReturn(Collections.singletonMap("123",
+                        Loan.builder().id(1L).book(Book.builder().id(10L).build()).build()));
+
+        // execution
+        BatchCheckoutResultDTO result = service.checkoutAll(Arrays.asList("123", "456", "789"), "Alan", null,
+                CheckoutMode.PARTIAL);
+
+        // verification
+        assertThat(result.getLoanIds()).containsOnly(entry("123", 1L));
+        assertThat(result.getLoanedIsbns()).containsExactly("456");
+        assertThat(result.getUnknownIsbns()).containsExactly("789");
+        verify(statsService).loanCreated(eq(10L), any(LocalDate.class), eq(true));
     }
 
     @Test
@@ -121,42 +215,111 @@ public class LoanServiceTest {
         loan.setId(1L);
         loan.setReturned(true);
 
-        when(repository.save(loan)).thenReturn(loan);
+        when(repository.setReturned(1L, true)).thenReturn(1);
 
         Loan updatedLoan = service.update(loan);
 
         assertThat(updatedLoan.getReturned()).isTrue();
 
-        verify(repository).save(loan);
+        verify(repository).setReturned(1L, true);
+        verify(repository, never()).saveAndFlush(any(Loan.class));
+        verify(statsService).loanReturned(1L, true);
     }
 
     @Test
-    @DisplayName("Should filter loans with properties")
-    public void findLoanTest() {
-        // given
-        LoanFilterDTO loanFilterDTO = LoanFilterDTO.builder().customer("Alan").isbn("isbn").build();
+    @DisplayName("Should not count a loan again when its returned flag does not change")
+    public void updateUnchangedLoanTest() {
+        // scenario
         Loan loan = createLoan();
         loan.setId(1L);
+        loan.setReturned(true);
+
+        when(repository.setReturned(1L, true)).thenReturn(0);
+
+        // execution
+        service.update(loan);
+
+        // verification
+        verifyNoInteractions(statsService);
+    }
+
+    @Test
+    @DisplayName("Should report the loans of a failed chunk and still return the other chunks")
+    public void returnAllFailedChunkTest() {
+        // scenario
+        when(repository.findOpenLoanIdsByIsbn(Collections.singletonList("123")))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(repository.lockForReturn(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+                Loan.builder().id(1L).book(Book.builder().id(10L).build()).build(),
+                Loan.builder().id(2L).book(Book.builder().id(20L).build()).build()));
+        when(repository.markReturned(Arrays.asList(1L, 2L))).thenThrow(new QueryTimeoutException("timeout"));
+        when(repository.lockForReturn(Collections.singletonList(3L))).thenReturn(Collections.singletonList(
+                Loan.builder().id(3L).book(Book.builder().id(30L).build()).build()));
+
+        // execution
+        BulkReturnResultDTO result = service.returnAll(Arrays.asList(1L, 2L, 3L), Collections.singletonList("123"));
 
-        PageRequest pageRequest = PageRequest.of(0, 10);
+        // verification
+        assertThat(result.getFailedIds()).containsExactly(1L, 2L);
+        assertThat(result.getFailedIsbns()).containsExactly("123");
+        assertThat(result.getReturnedIds()).containsExactly(3L);
+        verify(statsService).loanReturned(30L, true);
+    }
 
-        List<Loan> loans = Collections.singletonList(loan);
+    @Test
+    @DisplayName("Should refuse a return chunk size that is not positive")
+    public void returnChunkSizeTest() {
+        assertThatThrownBy(() -> new LoanServiceImpl(repository, statsService, transactionManager, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Return chunk size must be positive, was 0");
+    }
 
-        Page<Loan> page = new PageImpl<Loan>(loans, pageRequest, loans.size());
-        when(repository.findByBookIsbnOrCustomer(
-                anyString(),
-                anyString(),
-                any(PageRequest.class)))
-                .thenReturn(page);
+    @Test
+    @DisplayName("Should refuse a loan search no index can drive")
+    public void findWithoutIndexedFilterTest() {
+        // scenario
+        LoanFilterDTO filter = LoanFilterDTO.builder().returned(false).build();
 
-        // when
-        Page<Loan> result = service.find(loanFilterDTO, pageRequest);
+        // execution / verification
+        assertThatThrownBy(() -> service.findAsDTO(filter, PageRequest.of(0, 10)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Search loans by isbn, customer, email or loan date");
+        assertThatThrownBy(() -> service.findAfter(filter, null, 10))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Search loans by isbn, customer, email or loan date");
+        verify(repository, never()).searchDTOs(any(LoanFilterDTO.class), any(Pageable.class));
+        verify(repository, never()).searchAfter(any(LoanFilterDTO.class), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should return loans by id and isbn with one update per chunk")
+    public void returnAllTest() {
+        // scenario
+        Map<String, Long> openLoans = new HashMap<>();
+        openLoans.put("123", 4L);
+        openLoans.put("456", null);
+        when(repository.findOpenLoanIdsByIsbn(Arrays.asList("123", "456"))).thenReturn(openLoans);
+        when(repository.findOpenLoanIdsByIsbn(Collections.singletonList("789"))).thenReturn(Collections.emptyMap());
+        when(repository.lockForReturn(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+                Loan.builder().id(1L).book(Book.builder().id(10L).build()).returned(false).build(),
+                Loan.builder().id(2L).book(Book.builder().id(20L).build()).returned(true).build()));
+        when(repository.lockForReturn(Arrays.asList(3L, 4L))).thenReturn(Collections.singletonList(
+                Loan.builder().id(4L).book(Book.builder().id(40L).build()).build()));
 
-        // then
-        assertThat(result.getTotalElements()).isEqualTo(1);
-        assertThat(result.getContent()).isEqualTo(loans);
-        assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
-        assertThat(result.getPageable().getPageSize()).isEqualTo(10);
+        // execution
+        BulkReturnResultDTO result = service.returnAll(Arrays.asList(1L, 2L, 3L, 1L), Arrays.asList("123", "456", "789"));
+
+        // verification
+        assertThat(result.getReturnedIds()).containsExactly(1L, 4L);
+        assertThat(result.getAlreadyReturnedIds()).containsExactly(2L);
+        assertThat(result.getUnknownIds()).containsExactly(3L);
+        assertThat(result.getNotLoanedIsbns()).containsExactly("456");
+        assertThat(result.getUnknownIsbns()).containsExactly("789");
+        verify(repository).markReturned(Collections.singletonList(1L));
+        verify(repository).markReturned(Collections.singletonList(4L));
+        verify(statsService).loanReturned(10L, true);
+        verify(statsService).loanReturned(40L, true);
+        verify(repository, never()).saveAndFlush(any(Loan.class));
     }
 
     public static Loan createLoan() {
@@ -0,0 +1,232 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.api.dto.LoanStatsDTO;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import com.zoomalan.libraryapi.service.impl.LoanStatsServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class LoanStatsServiceTest {
+
+    @Autowired
+    LoanStatsService statsService;
+
+    @Autowired
+    LoanStatsServiceImpl statsImpl;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        statsService.rebuild();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        statsService.rebuild();
+    }
+
+    @Test
+    @DisplayName("Should count checkouts and returns as they commit")
+    public void countLoansTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        Long loanId = loanService.checkout("123", "Alan", null).get();
+
+        // execution
+        Loan loan = loanService.getById(loanId).get();
+        loan.setReturned(true);
+        loanService.update(loan);
+        loanService.checkout("123", "Bia", null);
+
+        // verification
+        assertThat(statsService.getBookStats(book.getId()).getTotalLoans()).isEqualTo(2);
+        assertThat(statsService.getBookStats(book.getId()).getOpenLoans()).isEqualTo(1);
+        assertThat(statsService.getStats().getTotalLoans()).isEqualTo(2);
+        assertThat(statsService.getStats().getOpenLoans()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not count a checkout whose transaction rolls back")
+    public void rolledBackCheckoutTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+
+        // execution
+        new TransactionTemplate(transactionManager).execute(status -> {
+            loanService.checkout("123", "Alan", null);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        // verification
+        assertThat(statsService.getBookStats(book.getId()).getTotalLoans()).isZero();
+        assertThat(statsService.getStats().getTotalLoans()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should persist the counters and rank the most borrowed books on flush")
+    public void flushTest() {
+        // scenario
+        Book popular = bookRepository.save(createNewBook("123"));
+        Book other = bookRepository.save(createNewBook("456"));
+        Long loanId = loanService.checkout("123", "Alan", null).get();
+        Loan loan = loanService.getById(loanId).get();
+        loan.setReturned(true);
+        loanService.update(loan);
+        loanService.checkout("123", "Bia", null);
+        loanService.checkout("456", "Caio", null);
+
+        // execution
+        statsService.flush();
+
+        // verification
+        assertThat(jdbcTemplate.queryForObject(" select total_loans from loan_stats_book where book_id = ? ",
+                Long.class, popular.getId())).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject(" select open_loans from loan_stats_book where book_id = ? ",
+                Long.class, other.getId())).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(" select checkouts from loan_stats_day where day = ? ",
+                Long.class, Date.valueOf(LocalDate.now()))).isEqualTo(3);
+
+        LoanStatsDTO stats = statsService.getStats();
+        assertThat(stats.getMostBorrowed()).extracting("bookId").containsExactly(popular.getId(), other.getId());
+        assertThat(stats.getCheckoutsPerDay()).containsEntry(LocalDate.now(), 3L);
+    }
+
+    @Test
+    @DisplayName("Should keep the changes not flushed yet when reloading the counters")
+    public void loadKeepsPendingChangesTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        statsService.loanCreated(book.getId(), LocalDate.now(), true);
+
+        // execution
+        statsImpl.load();
+
+        // verification
+        assertThat(statsService.getBookStats(book.getId()).getTotalLoans()).isEqualTo(1);
+        assertThat(statsService.getStats().getOpenLoans()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(" select total_loans from loan_stats_book where book_id = ? ",
+                Long.class, book.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should rebuild the counters from the loan table")
+    public void rebuildTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        loanService.checkout("123", "Alan", null);
+        statsService.flush();
+        jdbcTemplate.update(" update loan_stats_book set total_loans = 40, open_loans = 7 ");
+
+        // execution
+        statsService.rebuild();
+
+        // verification
+        assertThat(statsService.getBookStats(book.getId()).getTotalLoans()).isEqualTo(1);
+        assertThat(statsService.getBookStats(book.getId()).getOpenLoans()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(" select total_loans from loan_stats_book where book_id = ? ",
+                Long.class, book.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should pick up the changes another instance flushed")
+    public void flushFromAnotherInstanceTest() {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        LoanStatsServiceImpl otherInstance = new LoanStatsServiceImpl(jdbcTemplate, transactionManager, 10, 30);
+        otherInstance.load();
+        otherInstance.loanCreated(book.getId(), LocalDate.now(), true);
+        statsService.loanCreated(book.getId(), LocalDate.now(), false);
+
+        // execution
+        otherInstance.flush();
+        statsService.flush();
+        otherInstance.flush();
+
+        // verification
+        assertThat(statsService.getBookStats(book.getId()).getTotalLoans()).isEqualTo(2);
+        assertThat(statsService.getStats().getOpenLoans()).isEqualTo(1);
+        assertThat(otherInstance.getBookStats(book.getId()).getTotalLoans()).isEqualTo(2);
+        assertThat(otherInstance.getStats().getCheckoutsPerDay()).containsEntry(LocalDate.now(), 2L);
+        assertThat(jdbcTemplate.queryForObject(" select total_loans from loan_stats_book where book_id = ? ",
+                Long.class, book.getId())).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should not count twice a checkout committed while rebuilding")
+    public void rebuildAfterCommitTest() throws Exception {
+        // scenario
+        Book book = bookRepository.save(createNewBook("123"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicReference<Future<?>> rebuild = new AtomicReference<>();
+
+        // execution
+        new TransactionTemplate(transactionManager).execute(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    // runs after the checkout commits and before its counters move
+                    rebuild.set(executor.submit(statsService::rebuild));
+                    try {
+                        rebuild.get().get(500, TimeUnit.MILLISECONDS);
+                    } catch (Exception e) {
+                        // still waiting for the counters to move
+                    }
+                }
+            });
+            loanService.checkout("123", "Alan", null);
+            return null;
+        });
+        rebuild.get().get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // verification
+        assertThat(statsService.getBookStats(book.getId()).getTotalLoans()).isEqualTo(1);
+        assertThat(statsService.getStats().getOpenLoans()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,162 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.service.impl.MailDispatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessagePreparator;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.mail.internet.MimeMessage;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class MailDispatcherTest {
+
+    RecordingMailSender mailSender;
+    MeterRegistry registry;
+    MailDispatcher dispatcher;
+
+    @BeforeEach
+    public void setup() {
+        mailSender = new RecordingMailSender();
+        registry = new SimpleMeterRegistry();
+        dispatcher = new MailDispatcher(mailSender, registry, 100, 1, 10, 3, 1, 0, 1000, false);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should send every queued message")
+    public void sendQueuedMessagesTest() throws Exception {
+        CompletableFuture.allOf(
+                dispatcher.submit(message("a@email.com")),
+                dispatcher.submit(message("b@email.com")),
+                dispatcher.submit(message("c@email.com")))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(mailSender.delivered).extracting(message -> message.getTo()[0])
+                .containsExactlyInAnyOrder("a@email.com", "b@email.com", "c@email.com");
+        assertThat(registry.counter("mail.sent").count()).isEqualTo(3);
+        assertThat(registry.timer("mail.send").count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should retry a rejected message without resending the rest of its batch")
+    public void retryRejectedMessageTest() throws Exception {
+        mailSender.rejections.put("b@email.com", 1);
+
+        CompletableFuture.allOf(dispatcher.submit(message("a@email.com")), dispatcher.submit(message("b@email.com")))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(mailSender.delivered).extracting(message -> message.getTo()[0])
+                .containsExactlyInAnyOrder("a@email.com", "b@email.com");
+        assertThat(registry.counter("mail.retries").count()).isEqualTo(1);
+        assertThat(registry.counter("mail.failures").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should fail a message that is rejected on every attempt")
+    public void giveUpAfterMaxAttemptsTest() {
+        mailSender.rejections.put("b@email.com", Integer.MAX_VALUE);
+
+        CompletableFuture<Void> rejected = dispatcher.submit(message("b@email.com"));
+
+        assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(MailSendException.class);
+        assertThat(registry.counter("mail.retries").count()).isEqualTo(2);
+        assertThat(registry.counter("mail.failures").count()).isEqualTo(1);
+        assertThat(mailSender.delivered).isEmpty();
+    }
+
+    private static SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(to);
+        message.setText("Overdue");
+        return message;
+    }
+
+    /**
+     * Rejects each recipient in {@link #rejections} that many times before accepting it.
+     */
+    static class RecordingMailSender implements JavaMailSender {
+
+        final List<SimpleMailMessage> delivered = new CopyOnWriteArrayList<>();
+        final Map<String, Integer> rejections = new ConcurrentHashMap<>();
+
+        @Override
+        public void send(SimpleMailMessage simpleMessage) {
+            send(new SimpleMailMessage[]{simpleMessage});
+        }
+
+        @Override
+        public void send(SimpleMailMessage... simpleMessages) {
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (SimpleMailMessage message : simpleMessages) {
+                String to = message.getTo()[0];
+                int remaining = rejections.getOrDefault(to, 0);
+                if (remaining > 0) {
+                    rejections.put(to, remaining - 1);
+                    failed.put(message, new IllegalStateException("550 rejected " + to));
+                } else {
+                    delivered.add(message);
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MailSendException(failed);
+            }
+        }
+
+        @Override
+        public MimeMessage createMimeMessage() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MimeMessage createMimeMessage(InputStream contentStream) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(MimeMessage mimeMessage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(MimeMessage... mimeMessages) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(MimeMessagePreparator mimeMessagePreparator) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void send(MimeMessagePreparator... mimeMessagePreparators) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
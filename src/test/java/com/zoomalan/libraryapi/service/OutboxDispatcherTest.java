@@ -0,0 +1,84 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.model.entity.OutboxMessage;
+import com.zoomalan.libraryapi.model.repository.OutboxMessageRepository;
+import com.zoomalan.libraryapi.service.impl.MailDispatcher;
+import com.zoomalan.libraryapi.service.impl.OutboxDispatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class OutboxDispatcherTest {
+
+    OutboxDispatcher dispatcher;
+
+    MeterRegistry registry;
+
+    @MockBean
+    OutboxMessageRepository repository;
+
+    @MockBean
+    MailDispatcher mailDispatcher;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        dispatcher = new OutboxDispatcher(repository, mailDispatcher, registry, 10, 3, 300, 60);
+    }
+
+    @Test
+    @DisplayName("Should mark sent messages and release rejected ones for a later attempt")
+    public void dispatchTest() {
+        // scenario
+        OutboxMessage accepted = OutboxMessage.builder().id(1L).recipient("a@email.com").build();
+        OutboxMessage rejected = OutboxMessage.builder().id(2L).recipient("b@email.com").attempts(0).build();
+        when(repository.claim(anyString(), any(LocalDateTime.class), any(LocalDateTime.class), eq(3), eq(10)))
+                .thenReturn(2);
+        when(repository.findByClaimedByOrderById(anyString())).thenReturn(Arrays.asList(accepted, rejected));
+
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new MailSendException("550 rejected"));
+        when(mailDispatcher.submit(any(SimpleMailMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(failure);
+
+        // execution
+        dispatcher.dispatch();
+
+        // verification
+        verify(repository).markSent(eq(Collections.singletonList(1L)), any(LocalDateTime.class));
+        verify(repository).release(eq(2L), eq("550 rejected"), any(LocalDateTime.class));
+        assertThat(registry.counter("outbox.sent").count()).isEqualTo(1);
+        assertThat(registry.counter("outbox.released").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not touch the mail dispatcher when nothing is pending")
+    public void nothingPendingTest() {
+        when(repository.claim(anyString(), any(LocalDateTime.class), any(LocalDateTime.class), anyInt(), anyInt()))
+                .thenReturn(0);
+
+        dispatcher.dispatch();
+
+        verify(repository, never()).findByClaimedByOrderById(anyString());
+        verifyNoInteractions(mailDispatcher);
+    }
+}
@@ -0,0 +1,189 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.model.entity.JobExecution;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.JobExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ScheduleServiceTest {
+
+    static final String MESSAGE = "Overdue";
+
+    ScheduleService service;
+
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    EmailService emailService;
+
+    @MockBean
+    JobExecutionRepository jobExecutionRepository;
+
+    @MockBean
+    SchedulerLockService lockService;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setup() {
+        service = new ScheduleService(MESSAGE, loanService, emailService, jobExecutionRepository,
+                lockService, transactionManager, 2, 300);
+        when(lockService.runLocked(eq(ScheduleService.LATE_LOANS_JOB), any(), any())).thenAnswer(invocation -> {
+            invocation.<LongConsumer>getArgument(2).accept(7L);
+            return true;
+        });
+        when(lockService.extend(eq(ScheduleService.LATE_LOANS_JOB), eq(7L), any())).thenReturn(true);
+        when(jobExecutionRepository.save(any(JobExecution.class))).thenAnswer(invocation -> {
+            JobExecution execution = invocation.getArgument(0);
+            if (execution.getId() == null) {
+                execution.setId(1L);
+            }
+            return execution;
+        });
+    }
+
+    @Test
+    @DisplayName("Should queue mail for late loans chunk by chunk, committing each with its checkpoint")
+    public void sendMailToLateLoansTest() {
+        // scenario
+        when(jobExecutionRepository.findFirstByJobNameAndFinishedAtIsNullOrderByIdDesc(ScheduleService.LATE_LOANS_JOB))
+                .thenReturn(Optional.empty());
+        LocalDate dueDate = LocalDate.now().minusDays(4);
+        when(loanService.getLateLoansAfter(dueDate, null, 2)).thenReturn(loans(1, 2));
+        when(loanService.getLateLoansAfter(dueDate, 2L, 2)).thenReturn(loans(3, 4));
+        when(loanService.getLateLoansAfter(dueDate, 4L, 2)).thenReturn(loans(5));
+
+        // execution
+        service.sendMailToLateLoans();
+
+        // verification
+        verify(emailService).sendMails(MESSAGE, Arrays.asList("1@email.com", "2@email.com"));
+        verify(emailService).sendMails(MESSAGE, Arrays.asList("3@email.com", "4@email.com"));
+        verify(emailService).sendMails(MESSAGE, Collections.singletonList("5@email.com"));
+        verify(transactionManager, times(4)).commit(any());
+        verify(lockService, times(4)).extend(eq(ScheduleService.LATE_LOANS_JOB), eq(7L), any());
+
+        JobExecution execution = lastSaved();
+        assertThat(execution.getLastLoanId()).isEqualTo(5L);
+        assertThat(execution.getProcessed()).isEqualTo(5);
+        assertThat(execution.getFinishedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should resume an interrupted run after its last completed chunk")
+    public void resumeInterruptedRunTest() {
+        // scenario
+        LocalDate dueDate = LocalDate.now().minusDays(5);
+        JobExecution interrupted = JobExecution.builder().id(1L).jobName(ScheduleService.LATE_LOANS_JOB)
+                .dueDate(dueDate).lastLoanId(2L).processed(2).startedAt(LocalDateTime.now()).build();
+        when(jobExecutionRepository.findFirstByJobNameAndFinishedAtIsNullOrderByIdDesc(ScheduleService.LATE_LOANS_JOB))
+                .thenReturn(Optional.of(interrupted));
+        when(loanService.getLateLoansAfter(dueDate, 2L, 2)).thenReturn(loans(3));
+
+        // execution
+        service.resumeInterruptedRun();
+
+        // verification
+        verify(loanService, never()).getLateLoansAfter(dueDate, null, 2);
+        verify(emailService).sendMails(MESSAGE, Collections.singletonList("3@email.com"));
+        assertThat(interrupted.getLastLoanId()).isEqualTo(3L);
+        assertThat(interrupted.getProcessed()).isEqualTo(3);
+        assertThat(interrupted.getFinishedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should keep the checkpoint before a chunk whose mail could not be queued")
+    public void failedChunkKeepsCheckpointTest() {
+        // scenario
+        when(jobExecutionRepository.findFirstByJobNameAndFinishedAtIsNullOrderByIdDesc(ScheduleService.LATE_LOANS_JOB))
+                .thenReturn(Optional.empty());
+        LocalDate dueDate = LocalDate.now().minusDays(4);
+        when(loanService.getLateLoansAfter(dueDate, null, 2)).thenReturn(loans(1, 2));
+        when(loanService.getLateLoansAfter(dueDate, 2L, 2)).thenReturn(loans(3));
+        doThrow(new IllegalStateException("database down"))
+                .when(emailService).sendMails(MESSAGE, Collections.singletonList("3@email.com"));
+
+        // execution
+        Throwable exception = catchThrowable(() -> service.sendMailToLateLoans());
+
+        // verification
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        verify(transactionManager).rollback(any());
+        JobExecution execution = lastSaved();
+        assertThat(execution.getLastLoanId()).isEqualTo(2L);
+        assertThat(execution.getFinishedAt()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should skip the run while another node holds the lock")
+    public void skipWhenLockedTest() {
+        // scenario
+        when(lockService.runLocked(eq(ScheduleService.LATE_LOANS_JOB), any(), any())).thenReturn(false);
+
+        // execution
+        service.sendMailToLateLoans();
+
+        // verification
+        verifyNoInteractions(loanService, emailService, jobExecutionRepository);
+    }
+
+    @Test
+    @DisplayName("Should roll back a chunk once the lock was taken over by another node")
+    public void lostLockRollsBackChunkTest() {
+        // scenario
+        when(jobExecutionRepository.findFirstByJobNameAndFinishedAtIsNullOrderByIdDesc(ScheduleService.LATE_LOANS_JOB))
+                .thenReturn(Optional.empty());
+        LocalDate dueDate = LocalDate.now().minusDays(4);
+        when(loanService.getLateLoansAfter(dueDate, null, 2)).thenReturn(loans(1, 2));
+        when(lockService.extend(eq(ScheduleService.LATE_LOANS_JOB), eq(7L), any())).thenReturn(false);
+
+        // execution
+        Throwable exception = catchThrowable(() -> service.sendMailToLateLoans());
+
+        // verification
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        verify(emailService, never()).sendMails(any(), any());
+        verify(transactionManager).rollback(any());
+        assertThat(lastSaved().getLastLoanId()).isNull();
+    }
+
+    private JobExecution lastSaved() {
+        ArgumentCaptor<JobExecution> captor = ArgumentCaptor.forClass(JobExecution.class);
+        verify(jobExecutionRepository, atLeastOnce()).save(captor.capture());
+        List<JobExecution> saved = captor.getAllValues();
+        return saved.get(saved.size() - 1);
+    }
+
+    private static List<Loan> loans(long... ids) {
+        Loan[] loans = new Loan[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            loans[i] = Loan.builder().id(ids[i]).customer("Customer " + ids[i])
+                    .customerEmail(ids[i] + "@email.com").build();
+        }
+        return Arrays.asList(loans);
+    }
+}
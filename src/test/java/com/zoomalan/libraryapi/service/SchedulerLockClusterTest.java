@@ -0,0 +1,171 @@
+package com.zoomalan.libraryapi.service;
+
+import com.zoomalan.libraryapi.LibraryApiApplication;
+import com.zoomalan.libraryapi.model.entity.Book;
+import com.zoomalan.libraryapi.model.entity.Loan;
+import com.zoomalan.libraryapi.model.repository.BookRepository;
+import com.zoomalan.libraryapi.model.repository.JobExecutionRepository;
+import com.zoomalan.libraryapi.model.repository.LoanRepository;
+import com.zoomalan.libraryapi.model.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.zoomalan.libraryapi.model.repository.BookRepositoryTest.createNewBook;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two application contexts sharing one in-memory H2 database stand in for two nodes of a cluster.
+ */
+public class SchedulerLockClusterTest {
+
+    static final String LOCK = "clusterTest";
+
+    static ConfigurableApplicationContext nodeA;
+    static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    public static void startNodes() {
+        nodeA = startNode("node-a");
+        nodeB = startNode("node-b");
+    }
+
+    @AfterAll
+    public static void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodeA.getBean(OutboxMessageRepository.class).deleteAll();
+        nodeA.getBean(JobExecutionRepository.class).deleteAll();
+        nodeA.getBean(LoanRepository.class).deleteAll();
+        nodeA.getBean(BookRepository.class).deleteAll();
+        nodeA.getBean(JdbcTemplate.class).update("delete from scheduler_lock");
+    }
+
+    @Test
+    @DisplayName("Should not run a locked task on a second node until the first releases it")
+    public void lockExcludesOtherNodeTest() throws Exception {
+        // scenario
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong firstToken = new AtomicLong();
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() ->
+                lockService(nodeA).runLocked(LOCK, Duration.ofMinutes(1), token -> {
+                    firstToken.set(token);
+                    holding.countDown();
+                    await(release);
+                }));
+        assertThat(holding.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // execution
+        boolean ranWhileHeld = lockService(nodeB).runLocked(LOCK, Duration.ofMinutes(1), token -> { });
+        release.countDown();
+        AtomicLong secondToken = new AtomicLong();
+        boolean ranAfterRelease = first.get(5, TimeUnit.SECONDS)
+                && lockService(nodeB).runLocked(LOCK, Duration.ofMinutes(1), secondToken::set);
+
+        // verification
+        assertThat(ranWhileHeld).isFalse();
+        assertThat(ranAfterRelease).isTrue();
+        assertThat(secondToken.get()).isGreaterThan(firstToken.get());
+
+        MeterRegistry registry = nodeB.getBean(MeterRegistry.class);
+        assertThat(registry.timer("scheduler.lock.acquire", "lock", LOCK, "outcome", "busy").count()).isEqualTo(1);
+        assertThat(registry.timer("scheduler.lock.acquire", "lock", LOCK, "outcome", "acquired").count()).isEqualTo(1);
+        assertThat(registry.timer("scheduler.lock.held", "lock", LOCK).count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should fence off a node whose lease expired and was taken over")
+    public void expiredLeaseIsFencedTest() {
+        // scenario
+        AtomicBoolean takenOver = new AtomicBoolean();
+        AtomicBoolean extendedAfterTakeover = new AtomicBoolean(true);
+
+        // execution
+        lockService(nodeA).runLocked(LOCK, Duration.ofMillis(100), token -> {
+            sleep(300);
+            takenOver.set(lockService(nodeB).runLocked(LOCK, Duration.ofMinutes(1), newToken -> { }));
+            extendedAfterTakeover.set(lockService(nodeA).extend(LOCK, token, Duration.ofMinutes(1)));
+        });
+
+        // verification
+        assertThat(takenOver).isTrue();
+        assertThat(extendedAfterTakeover).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should run the late loans job once when both nodes fire together")
+    public void lateLoansRunOnceTest() throws Exception {
+        // scenario
+        Book book = nodeA.getBean(BookRepository.class).save(createNewBook("123"));
+        nodeA.getBean(LoanRepository.class).save(Loan.builder().book(book).customer("Alan")
+                .customerEmail("alan@email.com").loanDate(LocalDate.now().minusDays(10)).build());
+        CountDownLatch start = new CountDownLatch(1);
+
+        // execution
+        CompletableFuture<Void> a = CompletableFuture.runAsync(() -> {
+            await(start);
+            nodeA.getBean(ScheduleService.class).sendMailToLateLoans();
+        });
+        CompletableFuture<Void> b = CompletableFuture.runAsync(() -> {
+            await(start);
+            nodeB.getBean(ScheduleService.class).sendMailToLateLoans();
+        });
+        start.countDown();
+        CompletableFuture.allOf(a, b).get(10, TimeUnit.SECONDS);
+
+        // verification
+        assertThat(nodeA.getBean(JobExecutionRepository.class).count()).isEqualTo(1);
+        assertThat(nodeA.getBean(OutboxMessageRepository.class).findAll())
+                .extracting("recipient").containsExactly("alan@email.com");
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId) {
+        return new SpringApplicationBuilder(LibraryApiApplication.class)
+                .profiles("test")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:scheduler-lock-cluster;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.hikari.pool-name=" + nodeId,
+                        "server.port=0",
+                        "application.scheduler.node-id=" + nodeId)
+                .run();
+    }
+
+    private static SchedulerLockService lockService(ConfigurableApplicationContext node) {
+        return node.getBean(SchedulerLockService.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}